@@ -0,0 +1,151 @@
+package cn.aulang.common.benchmark;
+
+import cn.aulang.common.core.concurrent.ExpiredConcurrentHashMap;
+import cn.aulang.common.core.concurrent.ThreadFactoryBuilder;
+import cn.aulang.common.core.concurrent.TimerWheel;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过期Map的后台过期开销随Map数量与大小的变化, 对比每个Map一个清理线程的旧实现与共享时间轮
+ * <p>
+ * 每次迭代开始时写满所有Map, 之后由后台过期. 附加计数expiryCpuMicros是每次迭代(1秒)中
+ * 清理线程或时间轮线程消耗的CPU时间: 旧实现每expiry / 2扫描全部键, 时间轮的开销与写入及过期的条目数成正比.
+ * get只读, putAndGet持续覆盖十分之一的键, 时间轮每次写入都要调度新的超时并取消旧的
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExpiredConcurrentHashMapBenchmark {
+
+    private static final long EXPIRY_MILLIS = 200;
+    private static final String TIMER_THREAD_NAME = "benchmark-timer-wheel";
+
+    @Param({"legacy", "timerWheel"})
+    private String impl;
+
+    @Param({"1", "100"})
+    private int maps;
+
+    @Param({"1000", "100000"})
+    private int entries;
+
+    private final List<Map<Integer, Integer>> instances = new ArrayList<>();
+    private TimerWheel timer;
+    private int keysPerMap;
+
+    @Setup
+    public void setup() {
+        keysPerMap = Math.max(1, entries / maps);
+        if ("timerWheel".equals(impl)) {
+            timer = new TimerWheel(10, TimeUnit.MILLISECONDS,
+                    new ThreadFactoryBuilder().setNameFormat(TIMER_THREAD_NAME).setDaemon(true).build());
+        }
+        for (int i = 0; i < maps; i++) {
+            instances.add("legacy".equals(impl)
+                    ? new LegacyExpiredConcurrentHashMap<>(EXPIRY_MILLIS)
+                    : new ExpiredConcurrentHashMap<>(EXPIRY_MILLIS, null, timer));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Map<Integer, Integer> map : instances) {
+            if (map instanceof LegacyExpiredConcurrentHashMap<Integer, Integer> legacy) {
+                legacy.quitMap();
+            } else {
+                ((ExpiredConcurrentHashMap<Integer, Integer>) map).quitMap();
+            }
+        }
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * 每次迭代开始时写满所有Map, 迭代期间的读写只覆盖一部分键, 其余的由后台过期
+     */
+    @Setup(Level.Iteration)
+    public void fill() {
+        for (Map<Integer, Integer> map : instances) {
+            for (int key = 0; key < keysPerMap; key++) {
+                map.put(key, key);
+            }
+        }
+    }
+
+    @Benchmark
+    public Integer get(ExpiryCpu cpu) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return instances.get(random.nextInt(maps)).get(random.nextInt(keysPerMap));
+    }
+
+    @Benchmark
+    public Integer putAndGet(ExpiryCpu cpu) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Integer, Integer> map = instances.get(random.nextInt(maps));
+        // 只覆盖十分之一的键
+        int key = random.nextInt(Math.max(1, keysPerMap / 10));
+        map.put(key, key);
+        return map.get(key);
+    }
+
+    /**
+     * 清理线程或时间轮线程在一次迭代中消耗的CPU时间
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ExpiryCpu {
+
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        public long expiryCpuMicros;
+
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            expiryCpuMicros = 0;
+            start = cpuNanos();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            expiryCpuMicros = (cpuNanos() - start) / 1000;
+        }
+
+        private static long cpuNanos() {
+            long nanos = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                String name = thread.getName();
+                if (name.equals(LegacyExpiredConcurrentHashMap.CLEANER_THREAD_NAME) || name.equals(TIMER_THREAD_NAME)) {
+                    nanos += Math.max(0, THREADS.getThreadCpuTime(thread.threadId()));
+                }
+            }
+            return nanos;
+        }
+    }
+}
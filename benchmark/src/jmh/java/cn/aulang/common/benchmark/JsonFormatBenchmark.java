@@ -0,0 +1,89 @@
+package cn.aulang.common.benchmark;
+
+import cn.aulang.common.core.tools.JsonMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonMapper以JSON、Smile、CBOR读写CRUD实体数组的耗时与编码后大小
+ * <p>
+ * MessagePack需要额外的jackson-dataformat-msgpack依赖, 未包含在内.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"1", "100"})
+    private int count;
+
+    private JsonMapper mapper;
+    private Order[] orders;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        JsonFactory factory = switch (format) {
+            case "json" -> null;
+            case "smile" -> new SmileFactory();
+            case "cbor" -> new CBORFactory();
+            default -> throw new IllegalArgumentException(format);
+        };
+        mapper = new JsonMapper(factory, null);
+        mapper.warmUp(Order.class, Order[].class);
+
+        orders = new Order[count];
+        for (int i = 0; i < count; i++) {
+            orders[i] = Order.sample(1024 + i);
+        }
+        bytes = mapper.toBytes(orders);
+    }
+
+    @Benchmark
+    public byte[] encode(EncodedSize size) {
+        return mapper.toBytes(orders);
+    }
+
+    @Benchmark
+    public Order[] decode() {
+        return mapper.fromBytes(bytes, Order[].class);
+    }
+
+    /**
+     * 编码后的字节数
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class EncodedSize {
+
+        public long encodedBytes;
+
+        @TearDown(Level.Iteration)
+        public void measure(JsonFormatBenchmark benchmark) {
+            encodedBytes = benchmark.bytes.length;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package cn.aulang.common.benchmark;
+
+import cn.aulang.common.core.tools.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonMapper序列化与反序列化CRUD实体, 对比默认配置与Blackbird
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonMapperBenchmark {
+
+    @Param({"default", "blackbird"})
+    private String profile;
+
+    private JsonMapper mapper;
+    private Order order;
+    private String json;
+
+    @Setup
+    public void setup() {
+        mapper = new JsonMapper();
+        if ("blackbird".equals(profile)) {
+            mapper.enableBlackbird();
+        }
+        mapper.warmUp(Order.class);
+        order = Order.sample(1024);
+        json = mapper.toJson(order);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return mapper.toJson(order);
+    }
+
+    @Benchmark
+    public Order fromJson() {
+        return mapper.fromJson(json, Order.class);
+    }
+}
@@ -0,0 +1,73 @@
+package cn.aulang.common.benchmark;
+
+import java.io.Serial;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 改为时间轮之前的ExpiredConcurrentHashMap, 作为基准测试的对照: 每个实例一个清理线程,
+ * 每隔expiryInMillis / 2扫描全部写入时间. 去掉了监听器, 其余与原实现相同
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class LegacyExpiredConcurrentHashMap<K, V> extends ConcurrentHashMap<K, V> {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    static final String CLEANER_THREAD_NAME = "legacy-expired-map-cleaner";
+
+    private final Map<K, Long> timeMap = new ConcurrentHashMap<>();
+
+    private final long expiryInMillis;
+    private volatile boolean alive = true;
+
+    public LegacyExpiredConcurrentHashMap(long expiryInMillis) {
+        this.expiryInMillis = expiryInMillis;
+        Thread thread = new CleanerThread();
+        thread.setName(CLEANER_THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (!alive) {
+            throw new IllegalStateException("ExpiredConcurrent Hashmap is no more alive.. Try creating a new one.");
+        }
+        timeMap.put(key, System.currentTimeMillis());
+        return super.put(key, value);
+    }
+
+    public void quitMap() {
+        alive = false;
+    }
+
+    class CleanerThread extends Thread {
+
+        @Override
+        public void run() {
+            while (alive) {
+                cleanExpiredAndJunk();
+                try {
+                    //noinspection BusyWait
+                    Thread.sleep(expiryInMillis / 2);
+                } catch (InterruptedException e) {
+                    quitMap();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void cleanExpiredAndJunk() {
+            long currentTime = System.currentTimeMillis();
+            for (K key : timeMap.keySet()) {
+                if (currentTime > (timeMap.get(key) + expiryInMillis)) {
+                    remove(key);
+                    timeMap.remove(key);
+                }
+            }
+        }
+    }
+}
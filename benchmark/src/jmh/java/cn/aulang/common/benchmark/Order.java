@@ -0,0 +1,123 @@
+package cn.aulang.common.benchmark;
+
+import cn.aulang.common.crud.id.LongIdEntity;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 基准测试使用的CRUD实体
+ */
+public class Order extends LongIdEntity {
+
+    private Long id;
+    private Long userId;
+    private String orderNo;
+    private Integer status;
+    private BigDecimal amount;
+    private String address;
+    private String remark;
+    private List<String> tags;
+    private Date createTime;
+    private Date updateTime;
+
+    /**
+     * 字段取值接近业务数据的订单
+     */
+    public static Order sample(long id) {
+        Order order = new Order();
+        order.setId(id);
+        order.setUserId(10_000L + id % 1000);
+        order.setOrderNo("NO" + (202_400_000_000L + id));
+        order.setStatus((int) (id % 5));
+        order.setAmount(BigDecimal.valueOf(id * 37 % 100_000, 2));
+        order.setAddress("浙江省杭州市西湖区文三路" + id % 500 + "号");
+        order.setRemark("请在工作日送达, 到达前电话联系");
+        order.setTags(List.of("express", "invoice"));
+        order.setCreateTime(new Date(1_700_000_000_000L + id * 1000));
+        order.setUpdateTime(new Date(1_700_000_000_000L + id * 2000));
+        return order;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public String getRemark() {
+        return remark;
+    }
+
+    public void setRemark(String remark) {
+        this.remark = remark;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+
+    public Date getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(Date updateTime) {
+        this.updateTime = updateTime;
+    }
+}
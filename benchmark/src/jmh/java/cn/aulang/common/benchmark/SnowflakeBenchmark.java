@@ -0,0 +1,80 @@
+package cn.aulang.common.benchmark;
+
+import cn.aulang.common.core.tools.CachedSnowflake;
+import cn.aulang.common.core.tools.Snowflake;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 1、8、64个线程并发生成ID的吞吐量, 对比synchronized的旧实现、CAS实现与CachedSnowflake
+ * <p>
+ * 时间单位为毫秒, 序列17位, 每毫秒131072个ID, 吞吐量不受序列用完的限制
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnowflakeBenchmark {
+
+    private static final long EPOCH_MILLIS = 1635728400000L;
+    private static final int WORKER_ID_BITS = 5;
+    private static final int SEQUENCE_BITS = 17;
+
+    @Param({"synchronized", "cas", "cached"})
+    private String impl;
+
+    private LongSupplier generator;
+
+    @Setup
+    public void setup() {
+        generator = switch (impl) {
+            case "synchronized" -> new SynchronizedSnowflake(EPOCH_MILLIS, 1, WORKER_ID_BITS, SEQUENCE_BITS)::nextId;
+            case "cas" -> builder().build()::nextId;
+            case "cached" -> new CachedSnowflake(builder(), 3, 50)::nextId;
+            default -> throw new IllegalArgumentException(impl);
+        };
+    }
+
+    private static Snowflake.Builder builder() {
+        return Snowflake.builder()
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .epoch(EPOCH_MILLIS)
+                .timestampBits(41)
+                .workerIdBits(WORKER_ID_BITS)
+                .sequenceBits(SEQUENCE_BITS)
+                .workerId(1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long threads1() {
+        return generator.getAsLong();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long threads8() {
+        return generator.getAsLong();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long threads64() {
+        return generator.getAsLong();
+    }
+}
@@ -0,0 +1,61 @@
+package cn.aulang.common.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 改为CAS之前的Snowflake, 作为基准测试的对照: nextId使用synchronized, 序列用完时自旋等待下一个时间单位.
+ * 原实现以秒为单位且位数固定, 这里改为毫秒并使用与对比对象相同的位数, 其余与原实现相同
+ */
+public class SynchronizedSnowflake {
+
+    private final long epoch;
+    private final long workerId;
+    private final int timestampShift;
+    private final int workerIdShift;
+    private final long maxSequence;
+
+    private long sequence = 0L;
+    private long lastTimestamp = -1L;
+
+    public SynchronizedSnowflake(long epochMillis, long workerId, int workerIdBits, int sequenceBits) {
+        this.epoch = epochMillis;
+        this.workerId = workerId;
+        this.timestampShift = workerIdBits + sequenceBits;
+        this.workerIdShift = sequenceBits;
+        this.maxSequence = ~(-1L << sequenceBits);
+    }
+
+    public synchronized long nextId() {
+        long timestamp = timeGen();
+
+        if (timestamp < lastTimestamp) {
+            throw new RuntimeException(String.format(
+                    "Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+        }
+
+        if (lastTimestamp == timestamp) {
+            sequence = (sequence + 1) & maxSequence;
+            if (sequence == 0) {
+                timestamp = tilNextMillis(lastTimestamp);
+            }
+        } else {
+            sequence = 0L;
+        }
+
+        lastTimestamp = timestamp;
+
+        return ((timestamp - epoch) << timestampShift) | (workerId << workerIdShift) | sequence;
+    }
+
+    private long tilNextMillis(long lastTimestamp) {
+        long timestamp = timeGen();
+        while (timestamp <= lastTimestamp) {
+            timestamp = timeGen();
+        }
+        return timestamp;
+    }
+
+    private long timeGen() {
+        return TimeUnit.MILLISECONDS.toMillis(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,75 @@
+package cn.aulang.common.benchmark;
+
+import cn.aulang.common.core.tools.TimeUuidGenerator;
+import cn.aulang.common.core.utils.Identities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 字符串主键的生成与插入有序索引的吞吐量, 对比随机UUID(原UUIDGenId)、按时间排序的UUID(现UUIDGenId)与Base32(TimeUuidGenId)
+ * <p>
+ * 以预先放入indexSize个主键的TreeMap模拟聚簇索引, 随机主键插入到索引各处, 按时间排序的主键总是追加到末尾.
+ * 只反映比较与缓存局部性的差异, 不包含数据库页分裂与刷盘的开销.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeUuidBenchmark {
+
+    @Param({"random", "timeUuid", "base32"})
+    private String impl;
+
+    @Param({"1000000"})
+    private int indexSize;
+
+    private Supplier<String> generator;
+    private TreeMap<String, Boolean> index;
+
+    @Setup
+    public void setup() {
+        generator = switch (impl) {
+            case "random" -> Identities::uuid2;
+            case "timeUuid" -> Identities::timeUuid2;
+            case "base32" -> TimeUuidGenerator.shared()::nextBase32;
+            default -> throw new IllegalArgumentException(impl);
+        };
+    }
+
+    /**
+     * 每轮重建索引, 避免索引随迭代无限增长
+     */
+    @Setup(Level.Iteration)
+    public void fillIndex() {
+        index = new TreeMap<>();
+        for (int i = 0; i < indexSize; i++) {
+            index.put(generator.get(), Boolean.TRUE);
+        }
+    }
+
+    @Benchmark
+    public String generate() {
+        return generator.get();
+    }
+
+    @Benchmark
+    public Boolean insert() {
+        return index.put(generator.get(), Boolean.TRUE);
+    }
+}
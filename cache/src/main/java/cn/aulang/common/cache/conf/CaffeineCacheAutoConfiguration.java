@@ -1,8 +1,15 @@
 package cn.aulang.common.cache.conf;
 
+import cn.aulang.common.cache.support.SerializedSizeWeigher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.cache.CacheProperties;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
@@ -11,6 +18,7 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Caffeine缓存自动装配
@@ -18,24 +26,68 @@ import java.util.List;
  * @author wulang
  */
 @Configuration
-@EnableConfigurationProperties(CacheProperties.class)
+@EnableConfigurationProperties({CacheProperties.class, CaffeineCacheProperties.class})
 @ConditionalOnClass({Caffeine.class, CaffeineCacheManager.class})
 public class CaffeineCacheAutoConfiguration {
 
+    private static final String MAXIMUM_WEIGHT = "maximumWeight";
+
     @Bean
-    public CaffeineCacheManager caffeineCacheManager(CacheProperties cacheProperties) {
+    public CaffeineCacheManager caffeineCacheManager(CacheProperties cacheProperties,
+                                                     CaffeineCacheProperties caffeineCacheProperties,
+                                                     @Qualifier("caffeineCacheWeigher") ObjectProvider<Weigher<Object, Object>> weigher,
+                                                     ObjectProvider<CacheLoader<Object, Object>> cacheLoader) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheLoader.ifAvailable(cacheManager::setCacheLoader);
 
-        String specification = cacheProperties.getCaffeine().getSpec();
+        String specification = caffeineCacheProperties.getSpec();
         if (StringUtils.hasText(specification)) {
-            cacheManager.setCacheSpecification(specification);
+            if (specification.contains(MAXIMUM_WEIGHT)) {
+                cacheManager.setCaffeine(Caffeine.from(specification).weigher(requireWeigher(weigher)));
+            } else {
+                cacheManager.setCacheSpecification(specification);
+            }
         }
 
+        // 先设置没有自定义配置的缓存，setCacheNames会以默认配置重建同名缓存，覆盖已注册的自定义缓存
+        Map<String, String> initialCaches = caffeineCacheProperties.getInitialCaches();
         List<String> cacheNames = cacheProperties.getCacheNames();
         if (!CollectionUtils.isEmpty(cacheNames)) {
-            cacheManager.setCacheNames(cacheNames);
+            cacheManager.setCacheNames(cacheNames.stream().filter(name -> !initialCaches.containsKey(name)).toList());
         }
 
+        // 配置了自定义配置的缓存，每个缓存单独创建
+        initialCaches.forEach((name, spec) -> {
+            Caffeine<Object, Object> caffeine = Caffeine.from(spec);
+            if (spec.contains(MAXIMUM_WEIGHT)) {
+                caffeine.weigher(requireWeigher(weigher));
+            }
+            CacheLoader<Object, Object> loader = cacheLoader.getIfAvailable();
+            cacheManager.registerCustomCache(name, loader != null ? caffeine.build(loader) : caffeine.build());
+        });
+
         return cacheManager;
     }
+
+    private static Weigher<Object, Object> requireWeigher(ObjectProvider<Weigher<Object, Object>> weigher) {
+        Weigher<Object, Object> w = weigher.getIfAvailable();
+        if (w == null) {
+            throw new IllegalStateException("maximumWeight requires a caffeineCacheWeigher bean or jackson-databind");
+        }
+        return w;
+    }
+
+    /**
+     * 默认按JSON序列化后的大小计算权重，可以定义名为caffeineCacheWeigher的Bean替换
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(ObjectMapper.class)
+    static class WeigherConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(name = "caffeineCacheWeigher")
+        public Weigher<Object, Object> caffeineCacheWeigher(ObjectProvider<ObjectMapper> objectMapper) {
+            return new SerializedSizeWeigher(objectMapper.getIfAvailable(ObjectMapper::new));
+        }
+    }
 }
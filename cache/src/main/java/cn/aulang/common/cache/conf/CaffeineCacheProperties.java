@@ -0,0 +1,30 @@
+package cn.aulang.common.cache.conf;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 扩展Caffeine缓存配置
+ * <p>1. 提供不同缓存的Caffeine配置，如maximumSize、expireAfterWrite、refreshAfterWrite</p>
+ * <p>2. 配置maximumWeight时按序列化后的大小计算权重，按内存预算限制缓存</p>
+ */
+@ConfigurationProperties(prefix = "spring.cache.caffeine")
+public class CaffeineCacheProperties extends CacheProperties.Caffeine {
+
+    /**
+     * 自定义缓存的Caffeine配置(CaffeineSpec格式)，其他缓存使用{@link CacheProperties.Caffeine#getSpec()}配置；
+     * 例如：maximumWeight=104857600,expireAfterWrite=10m
+     */
+    private Map<String, String> initialCaches = new HashMap<>();
+
+    public Map<String, String> getInitialCaches() {
+        return initialCaches;
+    }
+
+    public void setInitialCaches(Map<String, String> initialCaches) {
+        this.initialCaches = initialCaches;
+    }
+}
@@ -7,10 +7,13 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import org.redisson.Redisson;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -40,11 +43,22 @@ import java.util.Map;
 @ConditionalOnClass({Redisson.class, RedisOperations.class})
 public class RedisCacheAutoConfiguration {
 
+    /**
+     * 开启二级缓存时由{@link TwoLevelCacheAutoConfiguration}作为远程缓存创建
+     */
     @Bean
     @Primary
+    @ConditionalOnProperty(name = "spring.cache.two-level.enabled", havingValue = "false", matchIfMissing = true)
     public RedisCacheManager cacheManager(RedisCacheProperties redisCacheProperties,
-                                          RedisConnectionFactory redisConnectionFactory) {
-        RedisCacheConfiguration configuration = createConfiguration(redisCacheProperties);
+                                          RedisConnectionFactory redisConnectionFactory,
+                                          @Qualifier("redisValueSerializer") RedisSerializer<Object> redisValueSerializer) {
+        return createCacheManager(redisCacheProperties, redisConnectionFactory, redisValueSerializer);
+    }
+
+    static RedisCacheManager createCacheManager(RedisCacheProperties redisCacheProperties,
+                                                RedisConnectionFactory redisConnectionFactory,
+                                                RedisSerializer<Object> redisValueSerializer) {
+        RedisCacheConfiguration configuration = createConfiguration(redisCacheProperties, redisValueSerializer);
 
         RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager.builder(redisConnectionFactory)
                 .cacheDefaults(configuration);
@@ -55,11 +69,10 @@ public class RedisCacheAutoConfiguration {
             builder.initialCacheNames(new LinkedHashSet<>(cacheNames));
         }
 
-        // 配置了失效时间的初始化缓存，不能使用同一个配置configuration，否则对象引用会修改干扰
+        // 配置了失效时间的初始化缓存，RedisCacheConfiguration不可变，entryTtl返回新的配置，共用同一个序列化器
         Map<String, Duration> initialCaches = redisCacheProperties.getInitialCaches();
         if (!initialCaches.isEmpty()) {
-            initialCaches.forEach((k, v) ->
-                    builder.withCacheConfiguration(k, createConfiguration(redisCacheProperties).entryTtl(v)));
+            initialCaches.forEach((k, v) -> builder.withCacheConfiguration(k, configuration.entryTtl(v)));
         }
 
         // 是否开启注解里创建没有预定义缓存
@@ -75,9 +88,9 @@ public class RedisCacheAutoConfiguration {
     }
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                       @Qualifier("redisValueSerializer") RedisSerializer<Object> valueSerializer) {
         StringRedisSerializer keySerializer = new StringRedisSerializer();
-        RedisSerializer<Object> valueSerializer = createValueSerializer();
 
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
         redisTemplate.setConnectionFactory(redisConnectionFactory);
@@ -89,11 +102,33 @@ public class RedisCacheAutoConfiguration {
         return redisTemplate;
     }
 
-    private RedisCacheConfiguration createConfiguration(RedisCacheProperties redisCacheProperties) {
+    /**
+     * 缓存与RedisTemplate共用的值序列化器，只创建一次。
+     * 默认使用独立的ObjectMapper，保持已缓存值的格式不变；开启use-spring-object-mapper时使用Spring管理的ObjectMapper的副本
+     * （保留其注册的模块与配置），因为开启类型信息会改变序列化结果，不能直接修改HTTP消息转换的ObjectMapper。
+     */
+    @Bean
+    @ConditionalOnMissingBean(name = "redisValueSerializer")
+    public RedisSerializer<Object> redisValueSerializer(RedisCacheProperties redisCacheProperties,
+                                                        ObjectProvider<ObjectMapper> objectMapper) {
+        ObjectMapper base = redisCacheProperties.isUseSpringObjectMapper() ? objectMapper.getIfAvailable() : null;
+        ObjectMapper mapper = base != null ? base.copy() : new ObjectMapper();
+
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY)
+                .activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                        ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+
+        return new Jackson2JsonRedisSerializer<>(mapper, Object.class);
+    }
+
+    private static RedisCacheConfiguration createConfiguration(RedisCacheProperties redisCacheProperties,
+                                                        RedisSerializer<Object> valueSerializer) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig();
 
         StringRedisSerializer keySerializer = new StringRedisSerializer();
-        RedisSerializer<Object> valueSerializer = createValueSerializer();
 
         config = config
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(keySerializer))
@@ -114,17 +149,4 @@ public class RedisCacheAutoConfiguration {
 
         return config;
     }
-
-    private RedisSerializer<Object> createValueSerializer() {
-        JsonMapper jsonMapper = JsonMapper.builder()
-                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
-                .serializationInclusion(JsonInclude.Include.NON_NULL)
-                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-                .visibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY)
-                .activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
-                        ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY)
-                .build();
-
-        return new Jackson2JsonRedisSerializer<>(jsonMapper, Object.class);
-    }
 }
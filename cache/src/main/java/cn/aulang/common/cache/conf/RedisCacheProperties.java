@@ -35,6 +35,12 @@ public class RedisCacheProperties extends CacheProperties.Redis {
      */
     private Map<String, Duration> initialCaches = new HashMap<>();
 
+    /**
+     * 缓存值是否基于Spring管理的ObjectMapper序列化，默认false，使用独立的ObjectMapper；
+     * 开启后沿用其注册的模块与配置（如日期格式、命名策略），会改变已缓存值的格式，切换前需清空缓存
+     */
+    private boolean useSpringObjectMapper = false;
+
     public boolean isAllowInFlightCacheCreation() {
         return allowInFlightCacheCreation;
     }
@@ -58,4 +64,12 @@ public class RedisCacheProperties extends CacheProperties.Redis {
     public void setInitialCaches(Map<String, Duration> initialCaches) {
         this.initialCaches = initialCaches;
     }
+
+    public boolean isUseSpringObjectMapper() {
+        return useSpringObjectMapper;
+    }
+
+    public void setUseSpringObjectMapper(boolean useSpringObjectMapper) {
+        this.useSpringObjectMapper = useSpringObjectMapper;
+    }
 }
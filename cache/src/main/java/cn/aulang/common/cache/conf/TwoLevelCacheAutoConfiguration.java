@@ -0,0 +1,43 @@
+package cn.aulang.common.cache.conf;
+
+import cn.aulang.common.cache.support.TwoLevelCacheManager;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Caffeine + Redis 二级缓存自动装配，spring.cache.two-level.enabled=true时开启
+ */
+@Configuration
+@AutoConfigureAfter(RedisCacheAutoConfiguration.class)
+@EnableConfigurationProperties({TwoLevelCacheProperties.class, RedisCacheProperties.class})
+@ConditionalOnClass({Caffeine.class, RedissonClient.class, RedisCacheManager.class})
+@ConditionalOnProperty(name = "spring.cache.two-level.enabled", havingValue = "true")
+public class TwoLevelCacheAutoConfiguration {
+
+    @Bean
+    @Primary
+    public TwoLevelCacheManager cacheManager(TwoLevelCacheProperties twoLevelCacheProperties,
+                                             RedisCacheProperties redisCacheProperties,
+                                             RedisConnectionFactory redisConnectionFactory,
+                                             RedissonClient redissonClient,
+                                             @Qualifier("redisValueSerializer") RedisSerializer<Object> redisValueSerializer) {
+        RedisCacheManager remoteCacheManager = RedisCacheAutoConfiguration.createCacheManager(
+                redisCacheProperties, redisConnectionFactory, redisValueSerializer);
+        remoteCacheManager.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(remoteCacheManager, redissonClient, twoLevelCacheProperties.getTopic(),
+                twoLevelCacheProperties.getLocalTimeToLive(), twoLevelCacheProperties.getLocalMaximumSize(),
+                twoLevelCacheProperties.getLocalCaches(), redisCacheProperties.isCacheNullValues());
+    }
+}
@@ -0,0 +1,81 @@
+package cn.aulang.common.cache.conf;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 二级缓存配置
+ * <p>1. 本地缓存（L1）的失效时间与数量，可以按缓存名称配置失效时间</p>
+ * <p>2. 远程缓存（L2）使用spring.cache.redis的配置，包括time-to-live与initial-caches</p>
+ */
+@ConfigurationProperties(prefix = "spring.cache.two-level")
+public class TwoLevelCacheProperties {
+
+    /**
+     * 是否开启二级缓存，开启后二级缓存管理器代替RedisCacheManager成为默认的缓存管理器
+     */
+    private boolean enabled = false;
+
+    /**
+     * 本地缓存默认失效时间，应不大于远程缓存的失效时间
+     */
+    private Duration localTimeToLive = Duration.ofMinutes(1);
+
+    /**
+     * 每个本地缓存的最大数量
+     */
+    private long localMaximumSize = 10000;
+
+    /**
+     * 自定义本地缓存失效时间配置
+     */
+    private Map<String, Duration> localCaches = new HashMap<>();
+
+    /**
+     * 本地缓存失效通知的主题
+     */
+    private String topic = "cache:two-level:invalidation";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getLocalTimeToLive() {
+        return localTimeToLive;
+    }
+
+    public void setLocalTimeToLive(Duration localTimeToLive) {
+        this.localTimeToLive = localTimeToLive;
+    }
+
+    public long getLocalMaximumSize() {
+        return localMaximumSize;
+    }
+
+    public void setLocalMaximumSize(long localMaximumSize) {
+        this.localMaximumSize = localMaximumSize;
+    }
+
+    public Map<String, Duration> getLocalCaches() {
+        return localCaches;
+    }
+
+    public void setLocalCaches(Map<String, Duration> localCaches) {
+        this.localCaches = localCaches;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+}
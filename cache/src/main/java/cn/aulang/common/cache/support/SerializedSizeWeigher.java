@@ -0,0 +1,65 @@
+package cn.aulang.common.cache.support;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Weigher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按JSON序列化后的字节数估算缓存项的权重，与maximumWeight一起按内存预算限制缓存
+ * <p>
+ * 只计数不保存序列化结果，但每次写入都会序列化一次，适合读多写少的缓存。
+ * 字符串与字节数组直接按长度计算，无法序列化的值权重为1。
+ */
+@Slf4j
+public class SerializedSizeWeigher implements Weigher<Object, Object> {
+
+    private final ObjectMapper objectMapper;
+
+    public SerializedSizeWeigher(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public int weigh(@NonNull Object key, @NonNull Object value) {
+        long size = sizeOf(key) + sizeOf(value);
+        return (int) Math.min(Math.max(size, 1), Integer.MAX_VALUE);
+    }
+
+    private long sizeOf(Object object) {
+        if (object instanceof String s) {
+            return s.length();
+        }
+        if (object instanceof byte[] bytes) {
+            return bytes.length;
+        }
+
+        CountingOutputStream out = new CountingOutputStream();
+        try {
+            objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, object);
+            return out.count;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to estimate size of {}: {}", object.getClass().getName(), e.getMessage());
+            return 1;
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cn.aulang.common.cache.support;
+
+import org.springframework.cache.Cache;
+import org.springframework.lang.NonNull;
+
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * 二级缓存，先读本地缓存（L1），未命中再读远程缓存（L2）并回填本地缓存
+ * <p>
+ * 写操作先写远程缓存再写本地缓存，然后通知其他节点删除本地缓存。
+ * 回填与其他节点的通知之间存在竞争，本地缓存可能短暂不一致，最长为本地缓存的失效时间。
+ */
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final Cache local;
+    private final Cache remote;
+
+    /**
+     * 通知其他节点删除本地缓存，key为null时清空
+     */
+    private final Consumer<Object> invalidator;
+
+    public TwoLevelCache(String name, Cache local, Cache remote, Consumer<Object> invalidator) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.invalidator = invalidator;
+    }
+
+    @Override
+    public @NonNull String getName() {
+        return name;
+    }
+
+    @Override
+    public @NonNull Object getNativeCache() {
+        return this;
+    }
+
+    public Cache getLocalCache() {
+        return local;
+    }
+
+    public Cache getRemoteCache() {
+        return remote;
+    }
+
+    @Override
+    public ValueWrapper get(@NonNull Object key) {
+        ValueWrapper wrapper = local.get(key);
+        if (wrapper != null) {
+            return wrapper;
+        }
+
+        wrapper = remote.get(key);
+        if (wrapper != null) {
+            local.put(key, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        return local.get(key, () -> remote.get(key, valueLoader));
+    }
+
+    @Override
+    public void put(@NonNull Object key, Object value) {
+        remote.put(key, value);
+        local.put(key, value);
+        invalidator.accept(key);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(@NonNull Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        if (existing == null) {
+            local.put(key, value);
+            invalidator.accept(key);
+        } else {
+            local.put(key, existing.get());
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        remote.evict(key);
+        local.evict(key);
+        invalidator.accept(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(@NonNull Object key) {
+        boolean present = remote.evictIfPresent(key);
+        local.evict(key);
+        invalidator.accept(key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.clear();
+        invalidator.accept(null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean present = remote.invalidate();
+        local.invalidate();
+        invalidator.accept(null);
+        return present;
+    }
+
+    /**
+     * 收到其他节点的通知时只删除本地缓存
+     */
+    void evictLocal(Object key) {
+        if (key == null) {
+            local.clear();
+        } else {
+            local.evict(key);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package cn.aulang.common.cache.support;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.codec.SerializationCodec;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.lang.NonNull;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caffeine本地缓存（L1）+ Redis远程缓存（L2）的二级缓存管理器
+ * <p>
+ * 远程缓存由{@link CacheManager}（通常为RedisCacheManager）提供，本地缓存按缓存名称创建；
+ * 缓存写入或删除时通过Redisson的发布订阅通知其他节点删除对应的本地缓存。
+ * <p>
+ * key以Java序列化传递，反序列化时还原SimpleKey等key缓存的hashCode，与本地缓存中的key相等；
+ * key不能序列化或反序列化时，其他节点清空整个本地缓存。
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, DisposableBean {
+
+    private final CacheManager remoteCacheManager;
+    private final RTopic topic;
+    private final int listenerId;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+
+    private final Duration localTimeToLive;
+    private final long localMaximumSize;
+    private final Map<String, Duration> localCaches;
+    private final boolean allowNullValues;
+
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param remoteCacheManager 远程缓存管理器
+     * @param redissonClient     用于发布与订阅失效通知
+     * @param topicName          失效通知的主题
+     * @param localTimeToLive    本地缓存默认失效时间，应不大于远程缓存的失效时间
+     * @param localMaximumSize   每个本地缓存的最大数量
+     * @param localCaches        自定义本地缓存失效时间的缓存
+     * @param allowNullValues    是否缓存null值，应与远程缓存一致
+     */
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, RedissonClient redissonClient, String topicName,
+                                Duration localTimeToLive, long localMaximumSize, Map<String, Duration> localCaches,
+                                boolean allowNullValues) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.localTimeToLive = localTimeToLive;
+        this.localMaximumSize = localMaximumSize;
+        this.localCaches = localCaches;
+        this.allowNullValues = allowNullValues;
+
+        this.topic = redissonClient.getTopic(topicName, new SerializationCodec(classLoader));
+        this.listenerId = topic.addListener(Invalidation.class, (channel, message) -> onInvalidation(message));
+    }
+
+    @Override
+    public Cache getCache(@NonNull String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> new TwoLevelCache(n, createLocalCache(n), remote, key -> publish(n, key)));
+    }
+
+    @Override
+    public @NonNull Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(remoteCacheManager.getCacheNames());
+        names.addAll(caches.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    private Cache createLocalCache(String name) {
+        Duration ttl = localCaches.getOrDefault(name, localTimeToLive);
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(localMaximumSize);
+        if (ttl != null) {
+            builder.expireAfterWrite(ttl);
+        }
+        return new CaffeineCache(name, builder.build(), allowNullValues);
+    }
+
+    private void publish(String cacheName, Object key) {
+        byte[] serializedKey = key != null ? serializeKey(key) : null;
+        topic.publishAsync(new Invalidation(instanceId, cacheName, serializedKey)).whenComplete((receivers, e) -> {
+            if (e != null) {
+                log.warn("Failed to publish invalidation of cache {}, key {}: {}", cacheName, key, e.getMessage());
+            }
+        });
+    }
+
+    private void onInvalidation(Invalidation message) {
+        if (instanceId.equals(message.sender())) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(message.cacheName());
+        if (cache != null) {
+            cache.evictLocal(message.key() != null ? deserializeKey(message.key()) : null);
+        }
+    }
+
+    /**
+     * @return 不能序列化时返回null，即通知其他节点清空缓存
+     */
+    private static byte[] serializeKey(Object key) {
+        if (!(key instanceof Serializable)) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(key);
+        } catch (IOException e) {
+            log.debug("Key {} is not serializable, invalidating the whole cache: {}", key, e.getMessage());
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return 不能反序列化时返回null，即清空本地缓存
+     */
+    private Object deserializeKey(byte[] key) {
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(key), classLoader)) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.warn("Failed to deserialize invalidated key, clearing the local cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        topic.removeListener(listenerId);
+    }
+
+    /**
+     * 失效通知，key为Java序列化后的key，为null时清空缓存
+     */
+    record Invalidation(String sender, String cacheName, byte[] key) implements Serializable {
+    }
+}
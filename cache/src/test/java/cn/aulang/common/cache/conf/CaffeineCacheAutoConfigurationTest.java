@@ -0,0 +1,81 @@
+package cn.aulang.common.cache.conf;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.core.ResolvableType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CaffeineCacheAutoConfigurationTest {
+
+    private final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+
+    @Test
+    void customSpecsSurviveOverlappingCacheNames() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setCacheNames(List.of("users", "orders"));
+        CaffeineCacheProperties caffeineCacheProperties = new CaffeineCacheProperties();
+        caffeineCacheProperties.setSpec("maximumSize=100");
+        caffeineCacheProperties.setInitialCaches(Map.of("orders", "maximumSize=10"));
+
+        CaffeineCacheManager cacheManager = createCacheManager(cacheProperties, caffeineCacheProperties);
+
+        assertEquals(Set.of("users", "orders"), Set.copyOf(cacheManager.getCacheNames()));
+        assertEquals(100, maximum(cacheManager, "users"));
+        assertEquals(10, maximum(cacheManager, "orders"));
+        // 配置了cache-names时不再动态创建缓存
+        assertNull(cacheManager.getCache("others"));
+    }
+
+    @Test
+    void allCacheNamesCustomized() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setCacheNames(List.of("orders"));
+        CaffeineCacheProperties caffeineCacheProperties = new CaffeineCacheProperties();
+        caffeineCacheProperties.setInitialCaches(Map.of("orders", "maximumSize=10"));
+
+        CaffeineCacheManager cacheManager = createCacheManager(cacheProperties, caffeineCacheProperties);
+
+        assertEquals(Set.of("orders"), Set.copyOf(cacheManager.getCacheNames()));
+        assertEquals(10, maximum(cacheManager, "orders"));
+        assertNull(cacheManager.getCache("others"));
+    }
+
+    @Test
+    void dynamicWithoutCacheNames() {
+        CaffeineCacheProperties caffeineCacheProperties = new CaffeineCacheProperties();
+        caffeineCacheProperties.setSpec("maximumSize=100");
+        caffeineCacheProperties.setInitialCaches(Map.of("orders", "maximumSize=10"));
+
+        CaffeineCacheManager cacheManager = createCacheManager(new CacheProperties(), caffeineCacheProperties);
+
+        assertEquals(10, maximum(cacheManager, "orders"));
+        assertEquals(100, maximum(cacheManager, "others"));
+    }
+
+    private CaffeineCacheManager createCacheManager(CacheProperties cacheProperties,
+                                                    CaffeineCacheProperties caffeineCacheProperties) {
+        ObjectProvider<Weigher<Object, Object>> weigher =
+                beanFactory.getBeanProvider(ResolvableType.forClassWithGenerics(Weigher.class, Object.class, Object.class));
+        ObjectProvider<CacheLoader<Object, Object>> cacheLoader =
+                beanFactory.getBeanProvider(ResolvableType.forClassWithGenerics(CacheLoader.class, Object.class, Object.class));
+        return new CaffeineCacheAutoConfiguration()
+                .caffeineCacheManager(cacheProperties, caffeineCacheProperties, weigher, cacheLoader);
+    }
+
+    private static long maximum(CaffeineCacheManager cacheManager, String name) {
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache(name);
+        return cache.getNativeCache().policy().eviction().orElseThrow().getMaximum();
+    }
+}
@@ -0,0 +1,63 @@
+package cn.aulang.common.cache.conf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisCacheAutoConfigurationTest {
+
+    private final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(
+            Map.of("objectMapper", new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)));
+
+    @Test
+    void keepsTheFormatIndependentOfTheSpringObjectMapperByDefault() {
+        String json = serialize(new RedisCacheProperties());
+
+        assertTrue(json.contains("\"orderNo\""), json);
+    }
+
+    @Test
+    void usesTheSpringObjectMapperWhenEnabled() throws Exception {
+        RedisCacheProperties properties = new RedisCacheProperties();
+        properties.setUseSpringObjectMapper(true);
+
+        String json = serialize(properties);
+
+        assertTrue(json.contains("\"order_no\""), json);
+        // 只修改副本, HTTP消息转换使用的ObjectMapper不开启类型信息
+        String springJson = beanFactory.getBean(ObjectMapper.class).writeValueAsString(new Sample());
+        assertFalse(springJson.contains("@class"), springJson);
+    }
+
+    private String serialize(RedisCacheProperties properties) {
+        RedisSerializer<Object> serializer = new RedisCacheAutoConfiguration()
+                .redisValueSerializer(properties, beanFactory.getBeanProvider(ObjectMapper.class));
+        Sample sample = new Sample();
+        sample.setOrderNo("A1");
+        byte[] bytes = serializer.serialize(sample);
+        assertEquals("A1", ((Sample) serializer.deserialize(bytes)).getOrderNo());
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Sample {
+
+        private String orderNo;
+
+        public String getOrderNo() {
+            return orderNo;
+        }
+
+        public void setOrderNo(String orderNo) {
+            this.orderNo = orderNo;
+        }
+    }
+}
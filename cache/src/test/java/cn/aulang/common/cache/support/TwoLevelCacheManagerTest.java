@@ -0,0 +1,115 @@
+package cn.aulang.common.cache.support;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.codec.Codec;
+import org.redisson.misc.CompletableFutureWrapper;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TwoLevelCacheManagerTest {
+
+    /**
+     * 两个节点共用的远程缓存与主题
+     */
+    private final CacheManager remote = new ConcurrentMapCacheManager();
+    private final RedissonClient redisson = inMemoryRedisson();
+
+    private final TwoLevelCacheManager node1 = newNode();
+    private final TwoLevelCacheManager node2 = newNode();
+
+    @Test
+    void ignoresItsOwnInvalidations() {
+        TwoLevelCache users = (TwoLevelCache) node1.getCache("users");
+        users.put("a", "value");
+
+        assertEquals("value", users.getLocalCache().get("a", String.class));
+    }
+
+    @Test
+    void evictsSimpleKeysOnOtherNodes() {
+        TwoLevelCache users1 = (TwoLevelCache) node1.getCache("users");
+        TwoLevelCache users2 = (TwoLevelCache) node2.getCache("users");
+        users1.put(new SimpleKey(1L, "a"), "old");
+        assertEquals("old", users2.get(new SimpleKey(1L, "a"), String.class));
+
+        users1.put(new SimpleKey(1L, "a"), "new");
+
+        assertNull(users2.getLocalCache().get(new SimpleKey(1L, "a")));
+        assertEquals("new", users2.get(new SimpleKey(1L, "a"), String.class));
+    }
+
+    @Test
+    void clearsOtherNodesWhenTheKeyIsNotSerializable() {
+        TwoLevelCache users1 = (TwoLevelCache) node1.getCache("users");
+        TwoLevelCache users2 = (TwoLevelCache) node2.getCache("users");
+        Object key = new Object();
+        users2.getLocalCache().put("b", "value");
+
+        users1.put(key, "value");
+
+        assertNull(users2.getLocalCache().get("b"));
+    }
+
+    private TwoLevelCacheManager newNode() {
+        return new TwoLevelCacheManager(remote, redisson, "invalidation", Duration.ofMinutes(1), 100, Map.of(), true);
+    }
+
+    /**
+     * 只实现getTopic的RedissonClient，消息经过编解码后同步发送给全部订阅者，与Redis传输的内容一致
+     */
+    private static RedissonClient inMemoryRedisson() {
+        List<MessageListener<Object>> listeners = new CopyOnWriteArrayList<>();
+        return proxy(RedissonClient.class, (method, args) -> {
+            Codec codec = (Codec) args[1];
+            return proxy(RTopic.class, (topicMethod, topicArgs) -> switch (topicMethod.getName()) {
+                case "addListener" -> {
+                    listeners.add(cast(topicArgs[1]));
+                    yield listeners.size();
+                }
+                case "publishAsync" -> {
+                    for (MessageListener<Object> listener : listeners) {
+                        ByteBuf buf = codec.getValueEncoder().encode(topicArgs[0]);
+                        try {
+                            listener.onMessage("invalidation", codec.getValueDecoder().decode(buf, null));
+                        } finally {
+                            buf.release();
+                        }
+                    }
+                    yield new CompletableFutureWrapper<>((long) listeners.size());
+                }
+                case "removeListener" -> null;
+                default -> throw new UnsupportedOperationException(topicMethod.getName());
+            });
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    private interface Handler {
+
+        Object invoke(java.lang.reflect.Method method, Object[] args) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method, args)));
+    }
+}
@@ -0,0 +1,52 @@
+package cn.aulang.common.cache.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TwoLevelCacheTest {
+
+    private final Cache local = new ConcurrentMapCache("users");
+    private final Cache remote = new ConcurrentMapCache("users");
+    private final List<Object> invalidated = new ArrayList<>();
+    private final TwoLevelCache cache = new TwoLevelCache("users", local, remote, invalidated::add);
+
+    @Test
+    void readsTheLocalCacheFirst() {
+        local.put("a", "local");
+        remote.put("a", "remote");
+
+        assertEquals("local", cache.get("a", String.class));
+    }
+
+    @Test
+    void backfillsTheLocalCacheFromTheRemoteCache() {
+        remote.put("a", "remote");
+
+        assertEquals("remote", cache.get("a", String.class));
+        assertEquals("remote", local.get("a", String.class));
+    }
+
+    @Test
+    void missesBothLevels() {
+        assertNull(cache.get("a"));
+        assertNull(local.get("a"));
+    }
+
+    @Test
+    void writesBothLevelsAndNotifiesOtherNodes() {
+        cache.put("a", "value");
+        cache.evict("b");
+        cache.clear();
+
+        assertNull(remote.get("a"));
+        assertEquals(List.of("a", "b"), invalidated.subList(0, 2));
+        assertNull(invalidated.get(2));
+    }
+}
@@ -2,17 +2,81 @@ package cn.aulang.common.core.concurrent;
 
 import jakarta.annotation.Nonnull;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
 
 /**
  * An Expired Concurrent Hash Map Solution which stores the keys and values only
  * for a specific amount of time, and then expires after that time.
  * <p>
- * The implementation is not perfect, 'remove*' methods not override, timeMap cleaned
- * by clean thread. A more powerful library Caffeine can be used in advanced scenes.
+ * Every key is stored once, in the table of the map itself. By default its value lives in a node which
+ * is also the timeout of the key on a {@link TimerWheel}, by default the JVM wide {@link TimerWheel#shared()}
+ * one, so maps do not need their own cleaner thread and all write paths ('put*', 'remove*', 'replace*',
+ * 'compute*', 'merge' and the iterators) keep the value and its expiry consistent.
+ * <p>
+ * {@link Builder#compactStorage()} stores the values directly in the table instead and keeps the write
+ * times in a {@link WriteTimeIndex}, which has no object per key. A sweep on the timer removes expired
+ * entries, so they live up to about 1.5 times the expiry time, as with the old cleaner thread.
+ * <p>
+ * Entries expire after write by default, {@link Builder#expireAfterAccess(long)} makes every read
+ * extend the life of the entry instead, and {@link #put(Object, Object, Duration)} gives an entry its
+ * own time to live. Reads only touch the node found by the single lookup of the key.
+ * <p>
+ * Expired entries are removed by the timer, {@link Builder#checkExpiryOnRead()} also makes
+ * {@code get}, {@code containsKey} and iteration skip and evict expired entries on the spot, which
+ * closes the window until the timer runs. Expiry times are read from the coarse clock of the timer.
+ * <p>
+ * {@link Builder#maximumSize(long)} bounds the map, entries are evicted by a W-TinyLFU policy and
+ * reported to {@link ExpiredConcurrentHashMapListener#onRemoval(Object, Object, RemovalCause)}.
+ * <p>
+ * {@link #get(Object, Function)} loads a missing value once per key, concurrent callers of the same
+ * key wait for that load instead of running the loader again.
+ * <p>
+ * Listeners are called on the writer or the timer thread, {@link Builder#executor(Executor)} moves
+ * them to an executor which receives the events in batches.
+ * <p>
+ * The bulk operations and views of {@link ConcurrentHashMap} see the values, not the nodes. Views
+ * which only deal with keys, {@link #keySet()} and {@link #keys()}, do not check expiry, and keys added
+ * through {@link #keySet(Object)} never expire. Serialization writes the entries and the settings,
+ * listener, executor and timer are not kept and entries get their full time to live again.
+ * <p>
+ * A more powerful library Caffeine can be used in advanced scenes.
  *
  * @param <K> Key type
  * @param <V> Value type
@@ -23,45 +87,208 @@ public class ExpiredConcurrentHashMap<K, V> extends ConcurrentHashMap<K, V> {
     private static final long serialVersionUID = 1L;
     private static final int DEFAULT_EXPIRED_MILLIS = 1000;
 
-    private final Map<K, Long> timeMap = new ConcurrentHashMap<>();
+    private static final int NONE = 0;
+    private static final int WINDOW = 1;
+    private static final int MAIN = 2;
 
-    private ExpiredConcurrentHashMapListener<K, V> listener;
+    private final transient ConcurrentHashMap<K, Loading<V>> loadings = new ConcurrentHashMap<>();
+    private final transient TimerWheel timer;
+
+    private transient volatile ExpiredConcurrentHashMapListener<K, V> listener;
+    private final transient ListenerDispatcher<K, V> dispatcher;
 
     private final long expiryInMillis;
-    private volatile boolean alive = true;
+    private final boolean expireAfterAccess;
+    private final boolean checkOnRead;
+    private transient volatile boolean alive = true;
+
+    private transient Set<Map.Entry<K, V>> entrySet;
+    private transient Collection<V> values;
+
+    /**
+     * Write times of the compact storage, null if the values are stored in nodes
+     */
+    private final transient WriteTimeIndex index;
+    private final transient Sweeper sweeper;
+
+    /**
+     * Size bound, the sketch is null if the map is unbounded
+     */
+    private final long maximumSize;
+    private final transient long windowMaximum;
+    private final transient FrequencySketch sketch;
+
+    /**
+     * Eviction queues and their sizes, guarded by the eviction lock
+     */
+    private final transient ReentrantLock evictionLock = new ReentrantLock();
+    private final transient Queue window = new Queue();
+    private final transient Queue main = new Queue();
+    private transient long windowCount;
+    private transient long mainCount;
 
     public ExpiredConcurrentHashMap() {
-        this.expiryInMillis = DEFAULT_EXPIRED_MILLIS;
-        initialize();
+        this(DEFAULT_EXPIRED_MILLIS);
     }
 
     public ExpiredConcurrentHashMap(ExpiredConcurrentHashMapListener<K, V> listener) {
-        this.listener = listener;
-        this.expiryInMillis = DEFAULT_EXPIRED_MILLIS;
-        initialize();
+        this(DEFAULT_EXPIRED_MILLIS, listener);
     }
 
     public ExpiredConcurrentHashMap(long expiryInMillis) {
-        this.expiryInMillis = expiryInMillis;
-        initialize();
+        this(expiryInMillis, null);
     }
 
     public ExpiredConcurrentHashMap(long expiryInMillis, ExpiredConcurrentHashMapListener<K, V> listener) {
+        this(expiryInMillis, listener, TimerWheel.shared());
+    }
+
+    /**
+     * @param expiryInMillis expiry time after write
+     * @param listener       listener, nullable
+     * @param timer          timer which expires the entries, can be shared by many maps
+     */
+    public ExpiredConcurrentHashMap(long expiryInMillis,
+                                    ExpiredConcurrentHashMapListener<K, V> listener,
+                                    @Nonnull TimerWheel timer) {
         this.expiryInMillis = expiryInMillis;
+        this.expireAfterAccess = false;
+        this.checkOnRead = false;
         this.listener = listener;
-        initialize();
+        this.dispatcher = null;
+        this.timer = Objects.requireNonNull(timer);
+        this.index = null;
+        this.sweeper = null;
+        this.maximumSize = Long.MAX_VALUE;
+        this.windowMaximum = Long.MAX_VALUE;
+        this.sketch = null;
+    }
+
+    private ExpiredConcurrentHashMap(Builder<K, V> builder) {
+        this.expiryInMillis = builder.expiryInMillis;
+        this.expireAfterAccess = builder.expireAfterAccess;
+        this.checkOnRead = builder.checkOnRead;
+        this.listener = builder.listener;
+        this.timer = builder.timer != null ? builder.timer : TimerWheel.shared();
+        this.dispatcher = builder.executor == null ? null : new ListenerDispatcher<>(() -> this.listener,
+                builder.executor, builder.dispatchQueueCapacity, builder.overflowPolicy, timer);
+        this.index = builder.compact ? new WriteTimeIndex() : null;
+        this.sweeper = builder.compact ? new Sweeper() : null;
+        this.maximumSize = builder.maximumSize;
+        if (maximumSize == Long.MAX_VALUE) {
+            this.windowMaximum = Long.MAX_VALUE;
+            this.sketch = null;
+        } else {
+            this.windowMaximum = Math.max(1, maximumSize / 100);
+            this.sketch = new FrequencySketch(maximumSize);
+        }
     }
 
-    void initialize() {
-        Thread thread = new CleanerThread();
-        thread.setDaemon(true);
-        thread.start();
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
     }
 
     public void registerListener(ExpiredConcurrentHashMapListener<K, V> listener) {
         this.listener = listener;
     }
 
+    @Override
+    public boolean containsKey(Object key) {
+        return lookup(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Objects.requireNonNull(value);
+        for (V stored : super.values()) {
+            V v = unwrap(stored);
+            if (v == value || v.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        Object stored = lookup(key);
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        Node node = node(stored);
+        if (expireAfterAccess && node instanceof TtlNode timed) {
+            long now = timer.currentTimeMillis();
+            // an entry past its expiry time is not brought back to life before the timer removes it
+            if (timed.expireAt - now <= 0) {
+                evict(node);
+                return null;
+            }
+            timed.expireAt = now + timed.ttl;
+        }
+        return unwrap(stored);
+    }
+
+    /**
+     * Returns the value of the key, loads and puts it if absent. The loader runs at most once at a time
+     * per key, concurrent callers wait for its result, or its exception. Unlike
+     * {@link #computeIfAbsent(Object, Function)} the loader runs outside any lock of the map. An exception
+     * of the loader is thrown to all the callers waiting for it and is not kept, the next call loads again.
+     *
+     * @param key    key
+     * @param loader loads the value, may return null if there is no value
+     * @return the current or loaded value, null if the loader returned null
+     * @throws IllegalStateException if trying to insert values into map after quiting, or if the loader
+     *                               loads the same key again, which would wait for itself forever
+     */
+    public V get(@Nonnull K key, @Nonnull Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(loader);
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        Loading<V> loading = new Loading<>();
+        Loading<V> existing = loadings.putIfAbsent(key, loading);
+        if (existing != null) {
+            if (existing.owner == Thread.currentThread()) {
+                throw new IllegalStateException("Recursive load of key: " + key);
+            }
+            return await(existing);
+        }
+
+        try {
+            value = get(key);
+            if (value == null) {
+                value = loader.apply(key);
+                if (value != null) {
+                    V previous = putIfAbsent(key, value);
+                    value = previous != null ? previous : value;
+                }
+            }
+            loading.complete(value);
+            return value;
+        } catch (Throwable e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadings.remove(key, loading);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> loading) {
+        try {
+            return loading.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -69,13 +296,38 @@ public class ExpiredConcurrentHashMap<K, V> extends ConcurrentHashMap<K, V> {
      */
     @Override
     public V put(@Nonnull K key, @Nonnull V value) {
-        if (!alive) {
-            throw new IllegalStateException("ExpiredConcurrent Hashmap is no more alive.. Try creating a new one.");
+        return put(key, value, expiryInMillis);
+    }
+
+    /**
+     * Associates the value with the key, the entry has its own time to live instead of the
+     * expiry of the map. Under expire-after-access each read extends the entry by the same time.
+     *
+     * @param key   key
+     * @param value value
+     * @param ttl   time to live of the entry
+     * @return the previous value, or null if there was no mapping for the key
+     * @throws IllegalStateException         if trying to insert values into map after quiting
+     * @throws UnsupportedOperationException if the map uses compact storage
+     */
+    public V put(@Nonnull K key, @Nonnull V value, @Nonnull Duration ttl) {
+        if (index != null) {
+            throw new UnsupportedOperationException("Compact storage does not support a time to live per entry.");
         }
-        timeMap.put(key, System.currentTimeMillis());
-        V returnVal = super.put(key, value);
-        Optional.ofNullable(listener).ifPresent(l -> l.onAdd(key, value));
-        return returnVal;
+        return put(key, value, ttl.toMillis());
+    }
+
+    private V put(K key, V value, long ttl) {
+        checkAlive();
+        Objects.requireNonNull(value);
+        if (index != null) {
+            Object[] previous = new Object[1];
+            write(key, (k, v) -> value, v -> true, previous);
+            return unwrap(previous[0]);
+        }
+        Node node = newNode(key, value, ttl);
+        Object previous = super.put(key, wrap(node));
+        return added(node, previous);
     }
 
     /**
@@ -85,12 +337,68 @@ public class ExpiredConcurrentHashMap<K, V> extends ConcurrentHashMap<K, V> {
      */
     @Override
     public void putAll(Map<? extends K, ? extends V> m) {
-        if (!alive) {
-            throw new IllegalStateException("ExpiredConcurrent Hashmap is no more alive.. Try creating a new one.");
+        checkAlive();
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if trying to insert values into map after quiting
+     */
+    @Override
+    public V putIfAbsent(@Nonnull K key, @Nonnull V value) {
+        checkAlive();
+        Objects.requireNonNull(value);
+        if (index != null) {
+            Object[] previous = new Object[1];
+            write(key, (k, v) -> v != null ? v : value, null, previous);
+            return unwrap(previous[0]);
+        }
+        Node node = newNode(key, value, expiryInMillis);
+        Object previous = super.putIfAbsent(key, wrap(node));
+        if (previous != null) {
+            return unwrap(previous);
+        }
+        added(node, null);
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(@Nonnull Object key) {
+        if (index != null) {
+            Object[] previous = new Object[1];
+            write((K) key, (k, v) -> null, null, previous);
+            return unwrap(previous[0]);
+        }
+        Object stored = super.remove(key);
+        if (stored == null) {
+            return null;
         }
-        for (K key : m.keySet()) {
-            put(key, m.get(key));
+        removed(stored);
+        return unwrap(stored);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(@Nonnull Object key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (index != null) {
+            Object[] previous = new Object[1];
+            write((K) key, (k, v) -> v != null && v.equals(value) ? null : v, null, previous);
+            return previous[0] != null && previous[0].equals(value);
         }
+        Object stored = super.get(key);
+        if (stored == null || !Objects.equals(unwrap(stored), value) || !super.remove(key, stored)) {
+            return false;
+        }
+        removed(stored);
+        return true;
     }
 
     /**
@@ -99,60 +407,1260 @@ public class ExpiredConcurrentHashMap<K, V> extends ConcurrentHashMap<K, V> {
      * @throws IllegalStateException if trying to insert values into map after quiting
      */
     @Override
-    public V putIfAbsent(K key, V value) {
-        if (!alive) {
-            throw new IllegalStateException("ExpiredConcurrent Hashmap is no more alive.. Try creating a new one.");
+    public V replace(@Nonnull K key, @Nonnull V value) {
+        checkAlive();
+        Objects.requireNonNull(value);
+        if (index != null) {
+            Object[] previous = new Object[1];
+            write(key, (k, v) -> v == null ? null : value, v -> true, previous);
+            return unwrap(previous[0]);
         }
-        if (!containsKey(key)) {
-            return put(key, value);
-        } else {
-            return get(key);
+        Node node = newNode(key, value, expiryInMillis);
+        Object previous = super.replace(key, wrap(node));
+        return previous == null ? null : added(node, previous);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if trying to insert values into map after quiting
+     */
+    @Override
+    public boolean replace(@Nonnull K key, @Nonnull V oldValue, @Nonnull V newValue) {
+        checkAlive();
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        if (index != null) {
+            Object[] previous = new Object[1];
+            write(key, (k, v) -> v != null && v.equals(oldValue) ? newValue : v, v -> v.equals(oldValue), previous);
+            return previous[0] != null && previous[0].equals(oldValue);
         }
+        Object stored = super.get(key);
+        if (stored == null || !Objects.equals(unwrap(stored), oldValue)) {
+            return false;
+        }
+        Node node = newNode(key, newValue, expiryInMillis);
+        if (!super.replace(key, wrap(stored), wrap(node))) {
+            return false;
+        }
+        added(node, stored);
+        return true;
     }
 
     /**
-     * Should call this method when it's no longer required
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if trying to insert values into map after quiting
      */
-    public void quitMap() {
-        alive = false;
+    @Override
+    public void replaceAll(@Nonnull BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        for (K key : super.keySet()) {
+            computeIfPresent(key, (k, v) -> Objects.requireNonNull(function.apply(k, v)));
+        }
     }
 
-    public boolean isAlive() {
-        return alive;
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if trying to insert values into map after quiting
+     */
+    @Override
+    public V computeIfAbsent(@Nonnull K key, @Nonnull Function<? super K, ? extends V> mappingFunction) {
+        checkAlive();
+        Objects.requireNonNull(mappingFunction);
+        if (index != null) {
+            return write(key, (k, v) -> v != null ? v : mappingFunction.apply(k), null, new Object[1]);
+        }
+        Object stored = super.get(key);
+        if (stored != null) {
+            return unwrap(stored);
+        }
+
+        Object[] created = new Object[1];
+        stored = super.computeIfAbsent(key, k -> {
+            V value = mappingFunction.apply(k);
+            if (value == null) {
+                return null;
+            }
+            Node n = newNode(k, value, expiryInMillis);
+            created[0] = n;
+            return wrap(n);
+        });
+        if (stored != null && stored == created[0]) {
+            added(node(created[0]), null);
+        }
+        return unwrap(stored);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if trying to insert values into map after quiting
+     */
+    @Override
+    public V computeIfPresent(@Nonnull K key,
+                              @Nonnull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return remap(key, (k, v) -> v == null ? null : remappingFunction.apply(k, v));
     }
 
     /**
-     * This thread performs the cleaning operation on the concurrent hashmap once in a specified interval.
-     * This wait interval is half of the time from the expiry time.
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if trying to insert values into map after quiting
      */
-    class CleanerThread extends Thread {
+    @Override
+    public V compute(@Nonnull K key, @Nonnull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return remap(key, remappingFunction);
+    }
 
-        @Override
-        public void run() {
-            while (alive) {
-                cleanExpiredAndJunk();
-                try {
-                    //noinspection BusyWait
-                    Thread.sleep(expiryInMillis / 2);
-                } catch (InterruptedException e) {
-                    quitMap();
-                    Thread.currentThread().interrupt();
-                }
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if trying to insert values into map after quiting
+     */
+    @Override
+    public V merge(@Nonnull K key, @Nonnull V value,
+                   @Nonnull BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        return remap(key, (k, v) -> v == null ? value : remappingFunction.apply(v, value));
+    }
+
+    @Override
+    public void clear() {
+        for (K key : super.keySet()) {
+            remove(key);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    @Override
+    @Nonnull
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        return vs != null ? vs : (values = new Values());
+    }
+
+    @Override
+    public Enumeration<V> elements() {
+        Iterator<V> iterator = values().iterator();
+        return new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
             }
+
+            @Override
+            public V nextElement() {
+                return iterator.next();
+            }
+        };
+    }
+
+    @Override
+    public void forEach(@Nonnull BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        super.forEach((k, stored) -> action.accept(k, unwrap(stored)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
         }
+        if (!(o instanceof Map<?, ?> m) || m.size() != size()) {
+            return false;
+        }
+        for (Map.Entry<K, V> e : super.entrySet()) {
+            Object v = m.get(e.getKey());
+            if (v == null || !v.equals(unwrap(e.getValue()))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        private void cleanExpiredAndJunk() {
-            long currentTime = System.currentTimeMillis();
-            for (K key : timeMap.keySet()) {
-                if (currentTime > (timeMap.get(key) + expiryInMillis)) {
-                    V value = remove(key);
-                    timeMap.remove(key);
-                    //Because not override move* method, timeMap has some junk data
-                    if (value != null) {
-                        Optional.ofNullable(listener).ifPresent(l -> l.onRemoval(key, value));
-                    }
-                }
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (Map.Entry<K, V> e : super.entrySet()) {
+            h += e.getKey().hashCode() ^ unwrap(e.getValue()).hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append('{');
+        for (Iterator<Map.Entry<K, V>> it = super.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<K, V> e = it.next();
+            Object k = e.getKey();
+            Object v = unwrap(e.getValue());
+            sb.append(k == this ? "(this Map)" : k).append('=').append(v == this ? "(this Map)" : v);
+            if (it.hasNext()) {
+                sb.append(',').append(' ');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    // bulk operations of ConcurrentHashMap, they see the values instead of the nodes
+
+    @Override
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        super.forEach(parallelismThreshold, (k, stored) -> action.accept(k, unwrap(stored)));
+    }
+
+    @Override
+    public <U> void forEach(long parallelismThreshold,
+                            BiFunction<? super K, ? super V, ? extends U> transformer,
+                            Consumer<? super U> action) {
+        Objects.requireNonNull(transformer);
+        super.forEach(parallelismThreshold, (k, stored) -> transformer.apply(k, unwrap(stored)), action);
+    }
+
+    @Override
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        return super.search(parallelismThreshold, (k, stored) -> searchFunction.apply(k, unwrap(stored)));
+    }
+
+    @Override
+    public <U> U reduce(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduce(parallelismThreshold, (k, stored) -> transformer.apply(k, unwrap(stored)), reducer);
+    }
+
+    @Override
+    public double reduceToDouble(long parallelismThreshold, ToDoubleBiFunction<? super K, ? super V> transformer,
+                                 double basis, DoubleBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceToDouble(parallelismThreshold,
+                (k, stored) -> transformer.applyAsDouble(k, unwrap(stored)), basis, reducer);
+    }
+
+    @Override
+    public long reduceToLong(long parallelismThreshold, ToLongBiFunction<? super K, ? super V> transformer,
+                             long basis, LongBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceToLong(parallelismThreshold,
+                (k, stored) -> transformer.applyAsLong(k, unwrap(stored)), basis, reducer);
+    }
+
+    @Override
+    public int reduceToInt(long parallelismThreshold, ToIntBiFunction<? super K, ? super V> transformer,
+                           int basis, IntBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceToInt(parallelismThreshold,
+                (k, stored) -> transformer.applyAsInt(k, unwrap(stored)), basis, reducer);
+    }
+
+    @Override
+    public void forEachValue(long parallelismThreshold, Consumer<? super V> action) {
+        Objects.requireNonNull(action);
+        super.forEachValue(parallelismThreshold, stored -> action.accept(unwrap(stored)));
+    }
+
+    @Override
+    public <U> void forEachValue(long parallelismThreshold, Function<? super V, ? extends U> transformer,
+                                 Consumer<? super U> action) {
+        Objects.requireNonNull(transformer);
+        super.forEachValue(parallelismThreshold, stored -> transformer.apply(unwrap(stored)), action);
+    }
+
+    @Override
+    public <U> U searchValues(long parallelismThreshold, Function<? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        return super.searchValues(parallelismThreshold, stored -> searchFunction.apply(unwrap(stored)));
+    }
+
+    @Override
+    public V reduceValues(long parallelismThreshold, BiFunction<? super V, ? super V, ? extends V> reducer) {
+        Objects.requireNonNull(reducer);
+        return super.reduceValues(parallelismThreshold, this::unwrap, reducer);
+    }
+
+    @Override
+    public <U> U reduceValues(long parallelismThreshold, Function<? super V, ? extends U> transformer,
+                              BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceValues(parallelismThreshold, stored -> transformer.apply(unwrap(stored)), reducer);
+    }
+
+    @Override
+    public double reduceValuesToDouble(long parallelismThreshold, ToDoubleFunction<? super V> transformer,
+                                       double basis, DoubleBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceValuesToDouble(parallelismThreshold,
+                stored -> transformer.applyAsDouble(unwrap(stored)), basis, reducer);
+    }
+
+    @Override
+    public long reduceValuesToLong(long parallelismThreshold, ToLongFunction<? super V> transformer,
+                                   long basis, LongBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceValuesToLong(parallelismThreshold,
+                stored -> transformer.applyAsLong(unwrap(stored)), basis, reducer);
+    }
+
+    @Override
+    public int reduceValuesToInt(long parallelismThreshold, ToIntFunction<? super V> transformer,
+                                 int basis, IntBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceValuesToInt(parallelismThreshold,
+                stored -> transformer.applyAsInt(unwrap(stored)), basis, reducer);
+    }
+
+    @Override
+    public void forEachEntry(long parallelismThreshold, Consumer<? super Map.Entry<K, V>> action) {
+        Objects.requireNonNull(action);
+        super.forEachEntry(parallelismThreshold, e -> action.accept(entry(e)));
+    }
+
+    @Override
+    public <U> void forEachEntry(long parallelismThreshold, Function<Map.Entry<K, V>, ? extends U> transformer,
+                                 Consumer<? super U> action) {
+        Objects.requireNonNull(transformer);
+        super.forEachEntry(parallelismThreshold, e -> transformer.apply(entry(e)), action);
+    }
+
+    @Override
+    public <U> U searchEntries(long parallelismThreshold, Function<Map.Entry<K, V>, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        return super.searchEntries(parallelismThreshold, e -> searchFunction.apply(entry(e)));
+    }
+
+    @Override
+    public Map.Entry<K, V> reduceEntries(long parallelismThreshold,
+                                         BiFunction<Map.Entry<K, V>, Map.Entry<K, V>, ? extends Map.Entry<K, V>> reducer) {
+        Objects.requireNonNull(reducer);
+        return super.reduceEntries(parallelismThreshold, this::entry, reducer);
+    }
+
+    @Override
+    public <U> U reduceEntries(long parallelismThreshold, Function<Map.Entry<K, V>, ? extends U> transformer,
+                               BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceEntries(parallelismThreshold, e -> transformer.apply(entry(e)), reducer);
+    }
+
+    @Override
+    public double reduceEntriesToDouble(long parallelismThreshold, ToDoubleFunction<Map.Entry<K, V>> transformer,
+                                        double basis, DoubleBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceEntriesToDouble(parallelismThreshold,
+                e -> transformer.applyAsDouble(entry(e)), basis, reducer);
+    }
+
+    @Override
+    public long reduceEntriesToLong(long parallelismThreshold, ToLongFunction<Map.Entry<K, V>> transformer,
+                                    long basis, LongBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceEntriesToLong(parallelismThreshold,
+                e -> transformer.applyAsLong(entry(e)), basis, reducer);
+    }
+
+    @Override
+    public int reduceEntriesToInt(long parallelismThreshold, ToIntFunction<Map.Entry<K, V>> transformer,
+                                  int basis, IntBinaryOperator reducer) {
+        Objects.requireNonNull(transformer);
+        return super.reduceEntriesToInt(parallelismThreshold,
+                e -> transformer.applyAsInt(entry(e)), basis, reducer);
+    }
+
+    /**
+     * Should call this method when it's no longer required, pending expiry are cancelled
+     */
+    public void quitMap() {
+        alive = false;
+        if (sweeper != null) {
+            sweeper.cancel();
+        }
+        for (V stored : super.values()) {
+            Node node = node(stored);
+            if (node != null) {
+                node.cancel();
+            }
+        }
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * Number of listener events dropped because the queue of undelivered events was full, either under
+     * {@link OverflowPolicy#DISCARD} or because they were raised on the timer thread, which never waits
+     * nor runs listeners. Always 0 without an executor.
+     */
+    public long droppedEvents() {
+        return dispatcher != null ? dispatcher.dropped() : 0;
+    }
+
+    /**
+     * Returns the node stored for a key, null if the value is stored directly.
+     */
+    @SuppressWarnings("unchecked")
+    private Node node(Object stored) {
+        return stored instanceof ExpiredConcurrentHashMap.Node ? (Node) stored : null;
+    }
+
+    /**
+     * Returns the value of an object stored in the table, which is either its node or the value itself.
+     */
+    @SuppressWarnings("unchecked")
+    private V unwrap(Object stored) {
+        Node node = node(stored);
+        return node != null ? node.value : (V) stored;
+    }
+
+    /**
+     * Nodes are stored in the table in place of their values.
+     */
+    @SuppressWarnings("unchecked")
+    private V wrap(Object node) {
+        return (V) node;
+    }
+
+    /**
+     * Visits the objects stored in the table, nodes or values.
+     */
+    private void forEachStored(BiConsumer<K, Object> action) {
+        super.forEach(action::accept);
+    }
+
+    private Map.Entry<K, V> entry(Map.Entry<K, V> e) {
+        return new WriteThroughEntry(e.getKey(), unwrap(e.getValue()));
+    }
+
+    private Node newNode(K key, V value, long ttl) {
+        if (sketch != null) {
+            return new BoundedNode(key, value, ttl);
+        }
+        if (ttl == expiryInMillis && !expireAfterAccess && !checkOnRead) {
+            return new Node(key, value);
+        }
+        return new TtlNode(key, value, ttl);
+    }
+
+    /**
+     * Looks up the object stored for the key, evicts it instead if it is an expired node and reads check
+     * expiry.
+     */
+    private Object lookup(Object key) {
+        Object stored = super.get(key);
+        Node node = node(stored);
+        if (node != null && checkOnRead && isExpired(node)) {
+            evict(node);
+            return null;
+        }
+        return stored;
+    }
+
+    private boolean isExpired(Node node) {
+        return node instanceof TtlNode timed && timed.expireAt - timer.currentTimeMillis() <= 0;
+    }
+
+    /**
+     * Removes an expired node found by a read, the timeout of the node is not needed any more.
+     */
+    private void evict(Node node) {
+        if (super.remove(node.key, node)) {
+            removed(node);
+            notifyRemoval(node.key, node.value, RemovalCause.EXPIRED);
+        }
+    }
+
+    /**
+     * Whether the write time index of the compact storage is empty, always true for node storage
+     */
+    boolean isIndexEmpty() {
+        return index == null || index.isEmpty();
+    }
+
+    private void checkAlive() {
+        if (!alive) {
+            throw new IllegalStateException("ExpiredConcurrent Hashmap is no more alive.. Try creating a new one.");
+        }
+    }
+
+    /**
+     * Remaps the value of the key in one atomic step, a new node is created if the value changes.
+     */
+    private V remap(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        checkAlive();
+        if (index != null) {
+            return write(key, remappingFunction, null, new Object[1]);
+        }
+        Object[] replaced = new Object[2];
+        Object stored = super.compute(key, (k, current) -> {
+            V oldValue = current == null ? null : unwrap(current);
+            V newValue = remappingFunction.apply(k, oldValue);
+            if (newValue == null) {
+                replaced[1] = current;
+                return null;
+            }
+            if (current != null && newValue == oldValue) {
+                return current;
+            }
+            Node n = newNode(k, newValue, expiryInMillis);
+            replaced[0] = n;
+            replaced[1] = current;
+            return wrap(n);
+        });
+
+        if (stored != null && stored == replaced[0]) {
+            added(node(stored), replaced[1]);
+        } else if (replaced[1] != null) {
+            removed(replaced[1]);
+        }
+        return unwrap(stored);
+    }
+
+    /**
+     * Writes of the compact storage, the value of the key and its write time change in one atomic step
+     * under the lock of the table bin. The write time is kept if the function returns the current value,
+     * unless the current value passes the touch test.
+     *
+     * @param touch    tests whether returning the current value still counts as a write, nullable
+     * @param previous receives the value before the write
+     * @return the value after the write
+     */
+    private V write(K key, BiFunction<? super K, ? super V, ? extends V> function,
+                    Predicate<? super V> touch, Object[] previous) {
+        int now = (int) timer.currentTimeMillis();
+        boolean[] written = new boolean[1];
+        V value = super.compute(key, (k, current) -> {
+            previous[0] = current;
+            V newValue = function.apply(k, current);
+            if (newValue == null) {
+                if (current != null) {
+                    index.remove(k);
+                }
+            } else if (newValue != current || (touch != null && touch.test(current))) {
+                index.put(k, now);
+                written[0] = true;
+            }
+            return newValue;
+        });
+        if (written[0]) {
+            sweeper.start();
+            notifyAdd(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the expired entries of one segment of the compact storage, each one is checked again
+     * under the lock of its table bin, so a concurrent write keeps the entry. The write time of a key
+     * which is not in the table any more, removed through a view which does not know the index, is
+     * dropped as well.
+     */
+    @SuppressWarnings("unchecked")
+    private void sweep(int segment) {
+        int now = (int) timer.currentTimeMillis();
+        int ttl = (int) expiryInMillis;
+        List<Object> expired = new ArrayList<>();
+        index.collectExpired(segment, now, ttl, expired);
+        for (Object key : expired) {
+            Object[] removed = new Object[1];
+            super.compute((K) key, (k, v) -> {
+                if (index.removeIfExpired(k, now, ttl)) {
+                    removed[0] = v;
+                    return null;
+                }
+                return v;
+            });
+            if (removed[0] != null) {
+                notifyRemoval((K) key, (V) removed[0], RemovalCause.EXPIRED);
+            }
+        }
+    }
+
+    /**
+     * Schedules the expiry of the new node, cancels the replaced one and notifies the listener.
+     *
+     * @return the replaced value
+     */
+    private V added(Node node, Object previous) {
+        timer.schedule(node, node.ttl(), TimeUnit.MILLISECONDS);
+        notifyAdd(node.key, node.value);
+        Node p = node(previous);
+        if (p != null) {
+            p.cancel();
+        }
+        if (sketch != null) {
+            sketch.increment(node.key);
+            afterWrite((BoundedNode) node, p);
+        }
+        return previous == null ? null : unwrap(previous);
+    }
+
+    /**
+     * Releases a node which has been removed from the map.
+     */
+    private void removed(Object stored) {
+        Node node = node(stored);
+        if (node == null) {
+            return;
+        }
+        node.cancel();
+        if (sketch != null) {
+            evictionLock.lock();
+            try {
+                unlink((BoundedNode) node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void notifyAdd(K key, V value) {
+        if (dispatcher != null) {
+            dispatcher.onAdd(key, value);
+        } else {
+            Optional.ofNullable(listener).ifPresent(l -> l.onAdd(key, value));
+        }
+    }
+
+    private void notifyRemoval(K key, V value, RemovalCause cause) {
+        if (dispatcher != null) {
+            dispatcher.onRemoval(key, value, cause);
+        } else {
+            Optional.ofNullable(listener).ifPresent(l -> l.onRemoval(key, value, cause));
+        }
+    }
+
+    /**
+     * Links the new node into the admission window and evicts while the map is over its maximum size.
+     * <p>
+     * The policy is W-TinyLFU over two FIFO queues. New nodes enter a small window, a node leaving
+     * the window is admitted into the main queue only if its key is seen more often than the head of
+     * the main queue, so a burst of keys seen once can not flush the frequently used ones. The head
+     * which survives a comparison gets a second chance at the tail of the main queue.
+     */
+    private void afterWrite(BoundedNode node, Node previous) {
+        List<BoundedNode> evicted = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            if (previous != null) {
+                unlink((BoundedNode) previous);
+            }
+            if (super.get(node.key) == node) {
+                link(node, WINDOW);
+            }
+
+            while (windowCount > windowMaximum) {
+                BoundedNode candidate = window.head;
+                unlink(candidate);
+                if (windowCount + mainCount < maximumSize || main.head == null) {
+                    link(candidate, MAIN);
+                    continue;
+                }
+
+                BoundedNode victim = main.head;
+                unlink(victim);
+                if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    link(candidate, MAIN);
+                    evicted.add(victim);
+                } else {
+                    link(victim, MAIN);
+                    evicted.add(candidate);
+                }
+            }
+            while (windowCount + mainCount > maximumSize) {
+                BoundedNode victim = main.head != null ? main.head : window.head;
+                unlink(victim);
+                evicted.add(victim);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+
+        for (BoundedNode victim : evicted) {
+            if (super.remove(victim.key, victim)) {
+                victim.cancel();
+                notifyRemoval(victim.key, victim.value, RemovalCause.SIZE);
+            }
+        }
+    }
+
+    private void link(BoundedNode node, int queue) {
+        Queue q = queue == WINDOW ? window : main;
+        node.queue = queue;
+        node.before = q.tail;
+        node.after = null;
+        if (q.tail == null) {
+            q.head = node;
+        } else {
+            q.tail.after = node;
+        }
+        q.tail = node;
+        if (queue == WINDOW) {
+            windowCount++;
+        } else {
+            mainCount++;
+        }
+    }
+
+    private void unlink(BoundedNode node) {
+        if (node.queue == NONE) {
+            return;
+        }
+        Queue q;
+        if (node.queue == WINDOW) {
+            q = window;
+            windowCount--;
+        } else {
+            q = main;
+            mainCount--;
+        }
+        if (node.before == null) {
+            q.head = node.after;
+        } else {
+            node.before.after = node.after;
+        }
+        if (node.after == null) {
+            q.tail = node.before;
+        } else {
+            node.after.before = node.before;
+        }
+        node.queue = NONE;
+        node.before = null;
+        node.after = null;
+    }
+
+    /**
+     * Called by the timer, removes the node if it is still the current one of the key. Under
+     * expire-after-access a node read since it was scheduled is scheduled again for the rest of its life.
+     */
+    private void expire(Node node) {
+        if (expireAfterAccess && node instanceof TtlNode timed) {
+            long remaining = timed.expireAt - timer.currentTimeMillis();
+            if (remaining > 0 && super.get(node.key) == node) {
+                timer.schedule(node, remaining, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        boolean present = super.remove(node.key, node);
+        // also unlinks a node which was removed through the key set view
+        removed(node);
+        if (present) {
+            notifyRemoval(node.key, node.value, RemovalCause.EXPIRED);
+        }
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new SerializedForm<>(this);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("SerializedForm required");
+    }
+
+    /**
+     * A load in flight, the thread running the loader is kept to detect a recursive load of the key.
+     */
+    private static final class Loading<V> extends CompletableFuture<V> {
+
+        final Thread owner = Thread.currentThread();
+    }
+
+    /**
+     * The storage node of a key, its value together with its timeout. The time to live is the expiry of
+     * the map and the node keeps no expiry time of its own, the timer alone decides when it expires.
+     */
+    private class Node extends TimerWheel.Timeout {
+
+        final K key;
+        final V value;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        long ttl() {
+            return expiryInMillis;
+        }
+
+        @Override
+        protected void run() {
+            expire(this);
+        }
+    }
+
+    /**
+     * A node with its own time to live and expiry time, used when the expiry is read or moved by reads.
+     */
+    private class TtlNode extends Node {
+
+        final long ttl;
+
+        /**
+         * Expiry time in milliseconds, moved forward by reads under expire-after-access
+         */
+        volatile long expireAt;
+
+        TtlNode(K key, V value, long ttl) {
+            super(key, value);
+            this.ttl = ttl;
+            this.expireAt = timer.currentTimeMillis() + ttl;
+        }
+
+        @Override
+        long ttl() {
+            return ttl;
+        }
+    }
+
+    /**
+     * A node of a bounded map, linked into an eviction queue.
+     */
+    private final class BoundedNode extends TtlNode {
+
+        /**
+         * Links of the eviction queue, guarded by the eviction lock
+         */
+        int queue = NONE;
+        BoundedNode before;
+        BoundedNode after;
+
+        BoundedNode(K key, V value, long ttl) {
+            super(key, value, ttl);
+        }
+    }
+
+    private final class Queue {
+
+        BoundedNode head;
+        BoundedNode tail;
+    }
+
+    /**
+     * Sweeps one segment of the write time index per run, so the whole index is covered twice per expiry
+     * time. It only runs while the index has keys, an abandoned empty map is not kept by the timer.
+     */
+    private final class Sweeper extends TimerWheel.Timeout {
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final long interval = Math.max(1, expiryInMillis / (2 * WriteTimeIndex.SEGMENTS));
+        private int segment;
+
+        void start() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                timer.schedule(this, interval, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        protected void run() {
+            if (!alive) {
+                return;
+            }
+            sweep(segment);
+            segment = (segment + 1) % WriteTimeIndex.SEGMENTS;
+            if (index.isEmpty()) {
+                scheduled.set(false);
+                // a writer may have seen the flag set just before it was cleared
+                if (index.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            timer.schedule(this, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        @Nonnull
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> e) || e.getKey() == null) {
+                return false;
+            }
+            V value = unwrap(lookup(e.getKey()));
+            return value != null && value.equals(e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof Map.Entry<?, ?> e && ExpiredConcurrentHashMap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public int size() {
+            return ExpiredConcurrentHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ExpiredConcurrentHashMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+
+        @Override
+        @Nonnull
+        public Iterator<V> iterator() {
+            EntryIterator entries = new EntryIterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public V next() {
+                    return entries.next().getValue();
+                }
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o != null && containsValue(o);
+        }
+
+        @Override
+        public int size() {
+            return ExpiredConcurrentHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ExpiredConcurrentHashMap.this.clear();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private final Iterator<Map.Entry<K, V>> delegate = ExpiredConcurrentHashMap.super.entrySet().iterator();
+        private K nextKey;
+        private Object next;
+        private K currentKey;
+        private Object current;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (delegate.hasNext()) {
+                Map.Entry<K, V> e = delegate.next();
+                Node node = node(e.getValue());
+                if (node != null && checkOnRead && isExpired(node)) {
+                    evict(node);
+                } else {
+                    nextKey = e.getKey();
+                    next = e.getValue();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            currentKey = nextKey;
+            current = next;
+            advance();
+            return new WriteThroughEntry(currentKey, unwrap(current));
+        }
+
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new IllegalStateException();
+            }
+            if (index != null) {
+                ExpiredConcurrentHashMap.this.remove(currentKey, current);
+            } else if (ExpiredConcurrentHashMap.super.remove(currentKey, current)) {
+                removed(current);
+            }
+            current = null;
+        }
+    }
+
+    private final class WriteThroughEntry implements Map.Entry<K, V> {
+
+        private final K key;
+        private V value;
+
+        WriteThroughEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = Objects.requireNonNull(value);
+            put(key, value);
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e && key.equals(e.getKey()) && value.equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * The serialized form of a map, its settings and entries. The map is built again when it is read.
+     */
+    private static final class SerializedForm<K, V> implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final long expiryInMillis;
+        private final boolean expireAfterAccess;
+        private final boolean checkOnRead;
+        private final boolean compact;
+        private final long maximumSize;
+        @SuppressWarnings("serial")
+        private final Object[] keys;
+        @SuppressWarnings("serial")
+        private final Object[] values;
+        private final long[] ttls;
+
+        SerializedForm(ExpiredConcurrentHashMap<K, V> map) {
+            this.expiryInMillis = map.expiryInMillis;
+            this.expireAfterAccess = map.expireAfterAccess;
+            this.checkOnRead = map.checkOnRead;
+            this.compact = map.index != null;
+            this.maximumSize = map.maximumSize;
+
+            List<Object> keys = new ArrayList<>();
+            List<Object> values = new ArrayList<>();
+            List<Long> ttls = new ArrayList<>();
+            map.forEachStored((k, stored) -> {
+                ExpiredConcurrentHashMap<K, V>.Node node = map.node(stored);
+                keys.add(k);
+                values.add(map.unwrap(stored));
+                ttls.add(node != null ? node.ttl() : map.expiryInMillis);
+            });
+            this.keys = keys.toArray();
+            this.values = values.toArray();
+            this.ttls = ttls.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        @Serial
+        @SuppressWarnings("unchecked")
+        private Object readResolve() {
+            Builder<K, V> builder = ExpiredConcurrentHashMap.builder();
+            if (expireAfterAccess) {
+                builder.expireAfterAccess(expiryInMillis);
+            } else {
+                builder.expireAfterWrite(expiryInMillis);
+            }
+            if (checkOnRead) {
+                builder.checkExpiryOnRead();
+            }
+            if (compact) {
+                builder.compactStorage();
+            }
+            if (maximumSize != Long.MAX_VALUE) {
+                builder.maximumSize(maximumSize);
+            }
+            ExpiredConcurrentHashMap<K, V> map = builder.build();
+            for (int i = 0; i < keys.length; i++) {
+                map.put((K) keys[i], (V) values[i], ttls[i]);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Builder of {@link ExpiredConcurrentHashMap}, entries expire 1 second after write by default.
+     *
+     * @param <K> Key type
+     * @param <V> Value type
+     */
+    public static final class Builder<K, V> {
+
+        private long expiryInMillis = DEFAULT_EXPIRED_MILLIS;
+        private boolean expireAfterAccess;
+        private boolean checkOnRead;
+        private boolean compact;
+        private long maximumSize = Long.MAX_VALUE;
+        private ExpiredConcurrentHashMapListener<K, V> listener;
+        private TimerWheel timer;
+        private Executor executor;
+        private int dispatchQueueCapacity = 1024;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+        private Builder() {
+        }
+
+        /**
+         * Entries expire after the given time since they were written.
+         */
+        public Builder<K, V> expireAfterWrite(long expiryInMillis) {
+            this.expiryInMillis = checkExpiry(expiryInMillis);
+            this.expireAfterAccess = false;
+            return this;
+        }
+
+        /**
+         * Entries expire after the given time since they were written or last read by {@code get}.
+         */
+        public Builder<K, V> expireAfterAccess(long expiryInMillis) {
+            this.expiryInMillis = checkExpiry(expiryInMillis);
+            this.expireAfterAccess = true;
+            return this;
+        }
+
+        /**
+         * {@code get}, {@code containsKey} and iteration check the expiry of entries and evict the
+         * expired ones on the spot, instead of returning them until the timer removes them.
+         */
+        public Builder<K, V> checkExpiryOnRead() {
+            this.checkOnRead = true;
+            return this;
+        }
+
+        /**
+         * Stores values directly in the table and their write times in a compact index, instead of a
+         * node per entry, which takes about half the heap of the old two map layout. Only the expire
+         * after write time of the map is supported, not expire-after-access, a time to live per entry,
+         * checking expiry on read or a maximum size. Entries are removed by a sweep, up to about half
+         * the expiry time late.
+         */
+        public Builder<K, V> compactStorage() {
+            this.compact = true;
+            return this;
+        }
+
+        /**
+         * Bounds the number of entries, a frequency-aware policy evicts entries once it is exceeded.
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize must be greater than 0: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder<K, V> listener(ExpiredConcurrentHashMapListener<K, V> listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Timer which expires the entries, {@link TimerWheel#shared()} if not set.
+         */
+        public Builder<K, V> timer(TimerWheel timer) {
+            this.timer = Objects.requireNonNull(timer);
+            return this;
+        }
+
+        /**
+         * Delivers listener events on the executor in batches, instead of on the writer or timer thread.
+         */
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Capacity of the queue of undelivered events when an executor is set, 1024 by default.
+         */
+        public Builder<K, V> dispatchQueueCapacity(int dispatchQueueCapacity) {
+            if (dispatchQueueCapacity <= 0) {
+                throw new IllegalArgumentException("dispatchQueueCapacity must be greater than 0: " + dispatchQueueCapacity);
+            }
+            this.dispatchQueueCapacity = dispatchQueueCapacity;
+            return this;
+        }
+
+        /**
+         * What writers do when the queue of undelivered events is full, {@link OverflowPolicy#CALLER_RUNS} by default.
+         * Expiry events raised on the timer thread are always discarded then, see
+         * {@link ExpiredConcurrentHashMap#droppedEvents()}.
+         */
+        public Builder<K, V> overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if compact storage is combined with a setting it does not support
+         */
+        public ExpiredConcurrentHashMap<K, V> build() {
+            if (compact) {
+                if (expireAfterAccess || checkOnRead || maximumSize != Long.MAX_VALUE) {
+                    throw new IllegalStateException(
+                            "Compact storage supports neither expireAfterAccess, checkExpiryOnRead nor maximumSize.");
+                }
+                if (expiryInMillis > Integer.MAX_VALUE / 2) {
+                    throw new IllegalStateException("Compact storage supports expiry up to "
+                            + Integer.MAX_VALUE / 2 + " milliseconds: " + expiryInMillis);
+                }
+            }
+            return new ExpiredConcurrentHashMap<>(this);
+        }
+
+        private static long checkExpiry(long expiryInMillis) {
+            if (expiryInMillis <= 0) {
+                throw new IllegalArgumentException("expiryInMillis must be greater than 0: " + expiryInMillis);
             }
+            return expiryInMillis;
         }
     }
-}
\ No newline at end of file
+}
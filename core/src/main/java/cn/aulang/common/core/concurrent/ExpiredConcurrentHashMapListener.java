@@ -1,5 +1,7 @@
 package cn.aulang.common.core.concurrent;
 
+import java.util.List;
+
 public interface ExpiredConcurrentHashMapListener<K, V> {
 
     default void onAdd(K key, V value) {
@@ -7,4 +9,22 @@ public interface ExpiredConcurrentHashMapListener<K, V> {
 
     default void onRemoval(K key, V value) {
     }
-}
\ No newline at end of file
+
+    /**
+     * Called when the map removes an entry by itself, delegates to {@link #onRemoval(Object, Object)} by default.
+     */
+    default void onRemoval(K key, V value, RemovalCause cause) {
+        onRemoval(key, value);
+    }
+
+    /**
+     * Called with consecutive removals when events are dispatched asynchronously, override it to write
+     * them to a database or a message queue in one go. Delegates to
+     * {@link #onRemoval(Object, Object, RemovalCause)} by default.
+     */
+    default void onRemovalBatch(List<RemovalNotification<K, V>> removals) {
+        for (RemovalNotification<K, V> removal : removals) {
+            onRemoval(removal.key(), removal.value(), removal.cause());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package cn.aulang.common.core.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Delivers listener events of {@link ExpiredConcurrentHashMap} on an executor, so slow listeners
+ * stall neither writers nor expiry.
+ * <p>
+ * Events wait in a bounded queue and at most one drain task runs at a time, so events are delivered
+ * in order, in batches of up to {@value #MAX_BATCH_SIZE}. Consecutive removals of a batch go to
+ * {@link ExpiredConcurrentHashMapListener#onRemovalBatch(List)} in one call.
+ * <p>
+ * The timer thread never blocks nor runs a listener, its events are dropped when the queue is full
+ * whatever the overflow policy, and they are left queued when the executor rejects the drain.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+class ListenerDispatcher<K, V> {
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final Supplier<ExpiredConcurrentHashMapListener<K, V>> listener;
+    private final Executor executor;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<Object> queue;
+    private final TimerWheel timer;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+
+    ListenerDispatcher(Supplier<ExpiredConcurrentHashMapListener<K, V>> listener, Executor executor,
+                       int capacity, OverflowPolicy overflowPolicy, TimerWheel timer) {
+        this.listener = listener;
+        this.executor = executor;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.timer = timer;
+    }
+
+    void onAdd(K key, V value) {
+        dispatch(new AddEvent<>(key, value));
+    }
+
+    void onRemoval(K key, V value, RemovalCause cause) {
+        dispatch(new RemovalNotification<>(key, value, cause));
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    private void dispatch(Object event) {
+        if (!queue.offer(event)) {
+            OverflowPolicy policy = timer.inWorkerThread() ? OverflowPolicy.DISCARD : overflowPolicy;
+            switch (policy) {
+                case BLOCK -> {
+                    try {
+                        queue.put(event);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                case DISCARD -> {
+                    dropped.increment();
+                    return;
+                }
+                case CALLER_RUNS -> {
+                    deliver(List.of(event));
+                    return;
+                }
+            }
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            if (timer.inWorkerThread()) {
+                // the next event of another thread drains the queue
+                scheduled.set(false);
+            } else {
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        do {
+            try {
+                while (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+                    deliver(batch);
+                    batch.clear();
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // events offered after the last drain but before the flag is cleared
+        } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(List<Object> batch) {
+        ExpiredConcurrentHashMapListener<K, V> l = listener.get();
+        if (l == null) {
+            return;
+        }
+
+        List<RemovalNotification<K, V>> removals = new ArrayList<>();
+        for (Object event : batch) {
+            if (event instanceof RemovalNotification<?, ?> removal) {
+                removals.add((RemovalNotification<K, V>) removal);
+            } else {
+                flush(l, removals);
+                AddEvent<K, V> add = (AddEvent<K, V>) event;
+                invoke(() -> l.onAdd(add.key(), add.value()));
+            }
+        }
+        flush(l, removals);
+    }
+
+    private void flush(ExpiredConcurrentHashMapListener<K, V> l, List<RemovalNotification<K, V>> removals) {
+        if (!removals.isEmpty()) {
+            List<RemovalNotification<K, V>> copy = List.copyOf(removals);
+            invoke(() -> l.onRemovalBatch(copy));
+            removals.clear();
+        }
+    }
+
+    /**
+     * A failing listener must not stop the delivery of the following events.
+     */
+    private static void invoke(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private record AddEvent<K, V>(K key, V value) {
+    }
+}
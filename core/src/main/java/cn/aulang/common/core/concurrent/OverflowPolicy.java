@@ -0,0 +1,23 @@
+package cn.aulang.common.core.concurrent;
+
+/**
+ * What a writer does when the bounded queue of asynchronous listener events is full. Events raised on
+ * the timer thread are discarded whatever the policy, the timer must neither wait nor run listeners.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait until the queue has room
+     */
+    BLOCK,
+
+    /**
+     * Drop the event
+     */
+    DISCARD,
+
+    /**
+     * Deliver the event on the writer thread, it may overtake queued events
+     */
+    CALLER_RUNS
+}
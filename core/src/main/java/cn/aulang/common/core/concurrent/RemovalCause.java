@@ -0,0 +1,17 @@
+package cn.aulang.common.core.concurrent;
+
+/**
+ * The reason why {@link ExpiredConcurrentHashMap} removed an entry by itself.
+ */
+public enum RemovalCause {
+
+    /**
+     * The entry's time to live has passed
+     */
+    EXPIRED,
+
+    /**
+     * The entry was evicted because the map exceeded its maximum size
+     */
+    SIZE
+}
@@ -0,0 +1,13 @@
+package cn.aulang.common.core.concurrent;
+
+/**
+ * An entry removed by {@link ExpiredConcurrentHashMap} by itself, together with the cause.
+ *
+ * @param key   key
+ * @param value value
+ * @param cause removal cause
+ * @param <K>   Key type
+ * @param <V>   Value type
+ */
+public record RemovalNotification<K, V>(K key, V value, RemovalCause cause) {
+}
@@ -0,0 +1,404 @@
+package cn.aulang.common.core.concurrent;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel which runs scheduled tasks on a single worker thread.
+ * <p>
+ * Timeouts are hashed into wheels of 64 buckets. Buckets of the lowest level are one tick wide,
+ * every higher level is 64 times wider and cascades its buckets into the lower levels as time
+ * advances. Scheduling and cancelling are O(1), and a timeout is moved at most once per level,
+ * so expiring n timeouts costs amortized O(n) no matter how many are pending.
+ * <p>
+ * Tasks run on the worker thread, they should be short and must not block.
+ */
+public class TimerWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    private static final long DEFAULT_TICK_MILLIS = 10;
+
+    private static final ThreadFactory DEFAULT_THREAD_FACTORY = new ThreadFactoryBuilder()
+            .setNameFormat("timer-wheel-%d")
+            .setDaemon(true)
+            .build();
+
+    private final long tickNanos;
+    private final long startTime;
+    private final Bucket[][] wheels;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private final Thread worker;
+    private volatile boolean alive = true;
+
+    /**
+     * Wall clock cached by the worker thread once per tick
+     */
+    private volatile long clock = System.currentTimeMillis();
+
+    /**
+     * Current tick, only accessed by the worker thread
+     */
+    private long currentTick;
+
+    public TimerWheel() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public TimerWheel(long tickDuration, TimeUnit unit) {
+        this(tickDuration, unit, DEFAULT_THREAD_FACTORY);
+    }
+
+    public TimerWheel(long tickDuration, TimeUnit unit, ThreadFactory threadFactory) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startTime = System.nanoTime();
+
+        this.wheels = new Bucket[LEVELS][WHEEL_SIZE];
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+
+        this.worker = threadFactory.newThread(this::run);
+        this.worker.start();
+    }
+
+    /**
+     * The JVM wide timer, ticks every 10 milliseconds on a daemon thread. It is never stopped.
+     */
+    public static TimerWheel shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * Schedules the task to run once after the given delay.
+     *
+     * @param task  the task, receives its own timeout
+     * @param delay the delay
+     * @param unit  the unit of the delay
+     * @return a handle which can cancel the task
+     * @throws IllegalStateException if the timer is stopped
+     */
+    public Timeout schedule(Consumer<Timeout> task, long delay, TimeUnit unit) {
+        Objects.requireNonNull(task);
+        Timeout timeout = new TaskTimeout(task);
+        schedule(timeout, delay, unit);
+        return timeout;
+    }
+
+    /**
+     * Schedules the timeout to run once after the given delay. A timeout can not be scheduled again
+     * until it has expired, e.g. from its own {@link Timeout#run()}, the call is ignored if the
+     * timeout has been cancelled already.
+     *
+     * @param timeout the timeout
+     * @param delay   the delay
+     * @param unit    the unit of the delay
+     * @throws IllegalStateException if the timer is stopped or the timeout has been scheduled
+     */
+    public void schedule(Timeout timeout, long delay, TimeUnit unit) {
+        if (!alive) {
+            throw new IllegalStateException("TimerWheel is stopped.");
+        }
+        int state = timeout.state;
+        if (state == Timeout.ST_CANCELLED) {
+            return;
+        }
+        if (state == Timeout.ST_INIT || (state == Timeout.ST_EXPIRED && timeout.timer != this)) {
+            throw new IllegalStateException("Timeout has been scheduled.");
+        }
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        timeout.timer = this;
+        timeout.deadlineTick = (deadline + tickNanos - 1) / tickNanos;
+        if (Timeout.STATE_UPDATER.compareAndSet(timeout, state, Timeout.ST_INIT)) {
+            pending.add(timeout);
+        }
+    }
+
+    /**
+     * Stops the worker thread, pending timeouts will never run.
+     */
+    public void stop() {
+        alive = false;
+        worker.interrupt();
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * Whether the current thread is the worker thread, which must not block.
+     */
+    public boolean inWorkerThread() {
+        return Thread.currentThread() == worker;
+    }
+
+    /**
+     * A coarse {@link System#currentTimeMillis()}, refreshed by the worker thread every tick. It is
+     * cheaper to read on hot paths and lags the real clock by at most about one tick.
+     */
+    public long currentTimeMillis() {
+        return clock;
+    }
+
+    private void run() {
+        while (alive) {
+            clock = System.currentTimeMillis();
+            long targetTick = (System.nanoTime() - startTime) / tickNanos;
+            while (currentTick < targetTick) {
+                processCancelled();
+                transferPending();
+                advance(++currentTick);
+            }
+            processCancelled();
+            transferPending();
+
+            long sleepNanos = (currentTick + 1) * tickNanos - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!alive) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state == Timeout.ST_INIT) {
+                insert(timeout);
+            }
+        }
+    }
+
+    private void insert(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        if (delta <= 0) {
+            // already due, it will run on the next slot of the lowest level
+            delta = 1;
+        }
+
+        long tick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        if (delta >= MAX_DELTA_TICKS) {
+            // beyond the span of the wheels, it is re-inserted when the top level cascades
+            tick = currentTick + MAX_DELTA_TICKS - 1;
+        }
+
+        int index = (int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+        wheels[level][index].add(timeout);
+    }
+
+    private void advance(long tick) {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int index = (int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+            Timeout timeout = wheels[level][index].clear();
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                if (timeout.deadlineTick <= tick) {
+                    timeout.expire();
+                } else {
+                    insert(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+        Timeout timeout = wheels[0][(int) tick & WHEEL_MASK].clear();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            if (timeout.deadlineTick <= tick) {
+                timeout.expire();
+            } else {
+                insert(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * A handle of a scheduled task. Subclasses can carry their own data and are scheduled by
+     * {@link TimerWheel#schedule(Timeout, long, TimeUnit)}, which saves a task object per timeout.
+     */
+    public abstract static class Timeout {
+
+        private static final int ST_NEW = 0;
+        private static final int ST_INIT = 1;
+        private static final int ST_CANCELLED = 2;
+        private static final int ST_EXPIRED = 3;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private TimerWheel timer;
+        private long deadlineTick;
+
+        private volatile int state = ST_NEW;
+
+        /**
+         * Links of the bucket, only accessed by the worker thread
+         */
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        protected Timeout() {
+        }
+
+        /**
+         * Runs on the worker thread when the timeout expires.
+         */
+        protected abstract void run();
+
+        /**
+         * Cancels the task if it has not run yet, a timeout cancelled before it is scheduled never runs.
+         *
+         * @return true if the task is cancelled by this call
+         */
+        public boolean cancel() {
+            for (; ; ) {
+                int current = state;
+                if (current == ST_NEW) {
+                    if (STATE_UPDATER.compareAndSet(this, ST_NEW, ST_CANCELLED)) {
+                        return true;
+                    }
+                } else if (current == ST_INIT) {
+                    if (STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                        timer.cancelled.add(this);
+                        return true;
+                    }
+                } else {
+                    return false;
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                run();
+            } catch (Throwable e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    private static final class TaskTimeout extends Timeout {
+
+        private final Consumer<Timeout> task;
+
+        private TaskTimeout(Consumer<Timeout> task) {
+            this.task = task;
+        }
+
+        @Override
+        protected void run() {
+            task.accept(this);
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, only accessed by the worker thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        /**
+         * Detaches all timeouts, the returned chain is linked by {@code next}.
+         */
+        Timeout clear() {
+            Timeout first = head;
+            for (Timeout timeout = first; timeout != null; timeout = timeout.next) {
+                timeout.bucket = null;
+                timeout.prev = null;
+            }
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    private static class SharedHolder {
+        static final TimerWheel INSTANCE = new TimerWheel();
+    }
+}
@@ -0,0 +1,166 @@
+package cn.aulang.common.core.concurrent;
+
+import java.util.List;
+
+/**
+ * Write times of the keys of an {@link ExpiredConcurrentHashMap} with compact storage.
+ * <p>
+ * An open addressing table with linear probing, split into {@value #SEGMENTS} segments which are
+ * guarded by their own locks. A slot is a key reference in one array and an int clock in another, so
+ * there is no object per key. Only writers and the sweeper of the map use the index, reads do not.
+ * <p>
+ * Clocks are truncated milliseconds and compared by their difference, which stays correct as long as
+ * an entry is younger than about 24 days.
+ */
+class WriteTimeIndex {
+
+    static final int SEGMENTS = 64;
+
+    private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    WriteTimeIndex() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Sets the write time of the key.
+     */
+    void put(Object key, int time) {
+        int hash = spread(key.hashCode());
+        segments[hash >>> SEGMENT_SHIFT].put(key, hash, time);
+    }
+
+    void remove(Object key) {
+        int hash = spread(key.hashCode());
+        segments[hash >>> SEGMENT_SHIFT].remove(key, hash, 0, 0);
+    }
+
+    /**
+     * Removes the key if it was written at least ttl milliseconds before now.
+     *
+     * @return true if the key was expired and is removed
+     */
+    boolean removeIfExpired(Object key, int now, int ttl) {
+        int hash = spread(key.hashCode());
+        return segments[hash >>> SEGMENT_SHIFT].remove(key, hash, now, ttl);
+    }
+
+    /**
+     * Adds the keys of the segment which were written at least ttl milliseconds before now to the list.
+     */
+    void collectExpired(int segment, int now, int ttl, List<Object> expired) {
+        segments[segment].collectExpired(now, ttl, expired);
+    }
+
+    boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static final class Segment {
+
+        private Object[] keys = new Object[INITIAL_CAPACITY];
+        private int[] times = new int[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void put(Object key, int hash, int time) {
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            for (Object k; (k = keys[i]) != null; i = (i + 1) & mask) {
+                if (k == key || k.equals(key)) {
+                    times[i] = time;
+                    return;
+                }
+            }
+            keys[i] = key;
+            times[i] = time;
+            // keeps the load factor at or below 0.75
+            if (++size > (keys.length >>> 1) + (keys.length >>> 2)) {
+                resize();
+            }
+        }
+
+        /**
+         * Removes the key, only if it is expired when ttl is greater than 0.
+         */
+        synchronized boolean remove(Object key, int hash, int now, int ttl) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                Object k = keys[i];
+                if (k == key || k.equals(key)) {
+                    if (ttl > 0 && now - times[i] < ttl) {
+                        return false;
+                    }
+                    delete(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized void collectExpired(int now, int ttl, List<Object> expired) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null && now - times[i] >= ttl) {
+                    expired.add(keys[i]);
+                }
+            }
+        }
+
+        /**
+         * Empties the slot and shifts the following keys of the probe sequence back, so lookups never
+         * stop at a hole and no tombstones are needed.
+         */
+        private void delete(int hole) {
+            int mask = keys.length - 1;
+            for (int i = (hole + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+                int home = spread(keys[i].hashCode()) & mask;
+                // the key may move into the hole unless its home slot lies after the hole
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    times[hole] = times[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = null;
+            size--;
+        }
+
+        private void resize() {
+            Object[] oldKeys = keys;
+            int[] oldTimes = times;
+            keys = new Object[oldKeys.length << 1];
+            times = new int[oldKeys.length << 1];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                Object key = oldKeys[j];
+                if (key != null) {
+                    int i = spread(key.hashCode()) & mask;
+                    while (keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = key;
+                    times[i] = oldTimes[j];
+                }
+            }
+        }
+    }
+}
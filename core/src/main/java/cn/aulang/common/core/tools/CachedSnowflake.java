@@ -0,0 +1,246 @@
+package cn.aulang.common.core.tools;
+
+import cn.aulang.common.core.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 基于RingBuffer缓存的Snowflake, 参考百度UidGenerator的CachedUidGenerator
+ * <p>
+ * 预先生成整个时间单位(默认为秒)的全部序列放入RingBuffer, 取ID只是一次CAS, 不受时间单位内序列数的限制.
+ * 剩余ID少于一定比例时由后台线程补充, 补充时时间单位持续递增而不读取时钟, 即突发时会借用未来的时间.
+ * RingBuffer为空时(包括首次取ID)由调用线程补充, 其他线程让出CPU等待补充完成.
+ * <p>
+ * 注意: 借用的时间在重启后可能与新的ID重复, 应配合每次启动都重新分配的工作机器ID使用.
+ */
+public class CachedSnowflake extends Snowflake {
+
+    private static final long EMPTY = -1L;
+
+    /**
+     * 默认RingBuffer大小为时间单位内序列数的2^3倍
+     */
+    private static final int DEFAULT_BOOST_POWER = 3;
+
+    /**
+     * 默认剩余ID少于50%时补充
+     */
+    private static final int DEFAULT_PADDING_FACTOR = 50;
+
+    private static final ExecutorService PADDING_EXECUTOR = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("snowflake-padding-%d").setDaemon(true).build());
+
+    private final AtomicLongArray slots;
+    private final int indexMask;
+    private final int paddingThreshold;
+    private final int paddingRounds;
+
+    /**
+     * 已放入的最后位置与已取出的最后位置
+     */
+    private final AtomicLong tail = new AtomicLong(-1);
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    /**
+     * 最后一次补充使用的时间差值, 只由持有padding标记的线程访问, 首次补充从当前时间开始
+     */
+    private long lastDelta = -1;
+    private final AtomicBoolean padding = new AtomicBoolean();
+
+    public CachedSnowflake() {
+        this(builder(), DEFAULT_BOOST_POWER, DEFAULT_PADDING_FACTOR);
+    }
+
+    public CachedSnowflake(long machineId) {
+        this(machineId, DEFAULT_BOOST_POWER, DEFAULT_PADDING_FACTOR);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param machineId     节点ID
+     * @param boostPower    RingBuffer大小为时间单位内序列数的2^boostPower倍
+     * @param paddingFactor 剩余ID少于该百分比时补充, 0~100
+     */
+    public CachedSnowflake(long machineId, int boostPower, int paddingFactor) {
+        this(builder().machineId(machineId), boostPower, paddingFactor);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param builder       位数、时间单位、开始时间等配置
+     * @param boostPower    RingBuffer大小为时间单位内序列数的2^boostPower倍
+     * @param paddingFactor 剩余ID少于该百分比时补充, 0~100
+     */
+    public CachedSnowflake(Snowflake.Builder builder, int boostPower, int paddingFactor) {
+        super(builder);
+        if (paddingFactor <= 0 || paddingFactor >= 100) {
+            throw new IllegalArgumentException("paddingFactor must be in (0, 100): " + paddingFactor);
+        }
+        long bufferSize = (builder.maxSequence() + 1) << boostPower;
+        if (boostPower < 0 || bufferSize > (1 << 30)) {
+            throw new IllegalArgumentException("boostPower is out of range: " + boostPower);
+        }
+        this.slots = newSlots((int) bufferSize);
+        this.indexMask = (int) bufferSize - 1;
+        this.paddingThreshold = (int) (bufferSize * paddingFactor / 100);
+        this.paddingRounds = 1 << boostPower;
+    }
+
+    private static AtomicLongArray newSlots(int bufferSize) {
+        AtomicLongArray slots = new AtomicLongArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            slots.set(i, EMPTY);
+        }
+        return slots;
+    }
+
+    /**
+     * 从RingBuffer中获得下一个ID (该方法是线程安全的)
+     *
+     * @return SnowflakeId
+     */
+    @Override
+    public long nextId() {
+        checkWorkerId();
+        for (; ; ) {
+            long currentCursor = cursor.get();
+            long currentTail = tail.get();
+            if (currentCursor == currentTail) {
+                // RingBuffer已空，由调用线程补充
+                if (!paddingBuffer()) {
+                    // 线程多于CPU时自旋会饿死补充线程
+                    Thread.yield();
+                }
+                continue;
+            }
+
+            long nextCursor = currentCursor + 1;
+            if (!cursor.compareAndSet(currentCursor, nextCursor)) {
+                continue;
+            }
+            if (currentTail - nextCursor < paddingThreshold) {
+                asyncPadding();
+            }
+
+            long id = slots.getAndSet((int) nextCursor & indexMask, EMPTY);
+            if (id != EMPTY) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * 从RingBuffer中批量获得ID, 每次CAS取出当前剩余的连续一段 (该方法是线程安全的)
+     *
+     * @param ids 用于存放ID的数组
+     */
+    @Override
+    public void nextIds(long[] ids) {
+        checkWorkerId();
+        int filled = 0;
+        while (filled < ids.length) {
+            long currentCursor = cursor.get();
+            long currentTail = tail.get();
+            if (currentCursor == currentTail) {
+                if (!paddingBuffer()) {
+                    // 线程多于CPU时自旋会饿死补充线程
+                    Thread.yield();
+                }
+                continue;
+            }
+
+            long count = Math.min(currentTail - currentCursor, ids.length - filled);
+            long nextCursor = currentCursor + count;
+            if (!cursor.compareAndSet(currentCursor, nextCursor)) {
+                continue;
+            }
+            if (currentTail - nextCursor < paddingThreshold) {
+                asyncPadding();
+            }
+
+            for (long c = currentCursor + 1; c <= nextCursor; c++) {
+                long id = slots.getAndSet((int) c & indexMask, EMPTY);
+                if (id != EMPTY) {
+                    ids[filled++] = id;
+                }
+            }
+        }
+    }
+
+    /**
+     * 剩余ID数量
+     */
+    public long remaining() {
+        return tail.get() - cursor.get();
+    }
+
+    private void asyncPadding() {
+        if (padding.compareAndSet(false, true)) {
+            PADDING_EXECUTOR.execute(this::doPadding);
+        }
+    }
+
+    /**
+     * 在调用线程补充RingBuffer
+     *
+     * @return 如果已有其他线程正在补充返回false
+     */
+    private boolean paddingBuffer() {
+        if (!padding.compareAndSet(false, true)) {
+            return false;
+        }
+        doPadding();
+        return true;
+    }
+
+    /**
+     * 补充RingBuffer直到放满, 每次放入一个时间单位的全部序列, 完成后释放padding标记.
+     * 最多补充RingBuffer大小的时间单位数, 否则边取边补时可能一直放不满, 无限借用未来的时间且调用线程无法返回.
+     */
+    private void doPadding() {
+        try {
+            boolean full = false;
+            for (int round = 0; round < paddingRounds && !full; round++) {
+                long delta = Math.max(lastDelta + 1, currentDelta());
+                if (delta > maxDelta()) {
+                    throw new IllegalStateException("Timestamp bits is exhausted. Refusing UID generate.");
+                }
+                lastDelta = delta;
+
+                long maxSequence = maxSequence();
+                for (long sequence = 0; sequence <= maxSequence; sequence++) {
+                    if (!put(allocate(delta, sequence))) {
+                        full = true;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            padding.set(false);
+        }
+    }
+
+    /**
+     * 只由持有padding标记的线程调用
+     */
+    private boolean put(long id) {
+        long currentTail = tail.get();
+        long nextTail = currentTail + 1;
+        int index = (int) nextTail & indexMask;
+        if (nextTail - cursor.get() > indexMask + 1 || slots.get(index) != EMPTY) {
+            return false;
+        }
+        slots.set(index, id);
+        tail.set(nextTail);
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package cn.aulang.common.core.tools;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 从系统属性或环境变量读取工作机器ID, 系统属性优先
+ * <p>
+ * 适用于由部署系统分配序号的场景, 例如Kubernetes StatefulSet的Pod序号.
+ */
+public class ExplicitWorkerIdAssigner implements WorkerIdAssigner {
+
+    public static final String PROPERTY_NAME = "snowflake.worker-id";
+    public static final String ENV_NAME = "SNOWFLAKE_WORKER_ID";
+
+    private final String propertyName;
+    private final String envName;
+
+    public ExplicitWorkerIdAssigner() {
+        this(PROPERTY_NAME, ENV_NAME);
+    }
+
+    /**
+     * @param propertyName 系统属性名
+     * @param envName      环境变量名
+     */
+    public ExplicitWorkerIdAssigner(String propertyName, String envName) {
+        this.propertyName = propertyName;
+        this.envName = envName;
+    }
+
+    /**
+     * 是否配置了工作机器ID
+     */
+    public boolean isConfigured() {
+        return getValue() != null;
+    }
+
+    @Override
+    public long assignWorkerId(long maxWorkerId) {
+        String value = getValue();
+        if (value == null) {
+            throw new IllegalStateException(String.format(
+                    "Neither system property %s nor environment variable %s is set", propertyName, envName));
+        }
+
+        long workerId;
+        try {
+            workerId = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid worker id: " + value);
+        }
+        if (workerId < 0 || workerId > maxWorkerId) {
+            throw new IllegalStateException(
+                    String.format("worker Id %d can't be greater than %d or less than 0", workerId, maxWorkerId));
+        }
+        return workerId;
+    }
+
+    private String getValue() {
+        String value = propertyName != null ? System.getProperty(propertyName) : null;
+        if (StringUtils.isBlank(value) && envName != null) {
+            value = System.getenv(envName);
+        }
+        return StringUtils.isBlank(value) ? null : value.trim();
+    }
+}
@@ -0,0 +1,93 @@
+package cn.aulang.common.core.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 通过本地文件锁分配工作机器ID
+ * <p>
+ * 目录下每个工作机器ID对应一个文件, 依次尝试加锁, 获得的第一个即为本进程的ID.
+ * 文件锁随进程退出由操作系统释放, 不需要清理. 只能保证共享同一目录的进程之间唯一,
+ * 适合同一主机上的多个实例; 跨主机请使用数据库租约或显式指定.
+ * <p>
+ * 锁在分配器关闭或被回收前一直有效, Snowflake会持有其分配器.
+ */
+public class FileLockWorkerIdAssigner implements WorkerIdAssigner, Closeable {
+
+    private final Path directory;
+
+    private FileChannel channel;
+    private FileLock lock;
+    private long workerId = -1;
+
+    public FileLockWorkerIdAssigner() {
+        this(Paths.get(System.getProperty("java.io.tmpdir"), "snowflake-worker"));
+    }
+
+    /**
+     * @param directory 锁文件目录, 需要唯一ID的进程应使用同一目录
+     */
+    public FileLockWorkerIdAssigner(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public synchronized long assignWorkerId(long maxWorkerId) {
+        if (lock != null && lock.isValid()) {
+            return workerId;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            for (long id = 0; id <= maxWorkerId; id++) {
+                FileChannel ch = FileChannel.open(directory.resolve("worker-" + id + ".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                boolean held = false;
+                try {
+                    FileLock fl = ch.tryLock();
+                    if (fl != null) {
+                        this.channel = ch;
+                        this.lock = fl;
+                        this.workerId = id;
+                        held = true;
+                        return id;
+                    }
+                } catch (OverlappingFileLockException e) {
+                    // 已被本进程中的其他分配器锁定
+                } finally {
+                    // 未持有锁的通道都要关闭, 包括加锁抛出IOException时
+                    if (!held) {
+                        ch.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        throw new IllegalStateException(
+                String.format("All %d worker ids are locked in %s", maxWorkerId + 1, directory));
+    }
+
+    /**
+     * 释放文件锁, 之后同一ID可以被其他进程获得
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            // 关闭通道同时释放锁
+            channel.close();
+            channel = null;
+            lock = null;
+            workerId = -1;
+        }
+    }
+}
@@ -1,34 +1,94 @@
 package cn.aulang.common.core.tools;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
 import com.fasterxml.jackson.databind.util.JSONPObject;
+import com.fasterxml.jackson.databind.util.LRUMap;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 简单封装Jackson，实现JSON String<->Java Object的Mapper.
  * 封装不同的输出风格, 使用不同的builder函数创建实例.
+ * <p>
+ * 按类型及视图缓存ObjectReader/ObjectWriter, 避免每次读写重新解析类型, 缓存数量有上限.
+ * <p>
+ * byte[]与ByteBuffer直接以UTF-8读写, 不经过String; InputStream/OutputStream的读写及流式读取大数组
+ * 由调用者管理流, 异常直接抛出. 可以使用二进制格式(Smile、CBOR、MessagePack)的JsonFactory构造,
+ * 字节及流相关的方法对各格式通用.
  */
 @Slf4j
 public class JsonMapper {
 
+    /**
+     * 缓存的ObjectReader/ObjectWriter的最大数量
+     */
+    private static final int MAX_CACHED = 512;
+
+    /**
+     * 解析失败日志每秒最多记录的条数及记录的输入的最大长度, 防止大量非法输入导致日志过多
+     */
+    private static final int MAX_ERROR_LOGS_PER_SECOND = 10;
+    private static final int MAX_LOGGED_INPUT_LENGTH = 256;
+
+    private static final AtomicLong errorLogWindow = new AtomicLong();
+    private static final AtomicInteger errorLogCount = new AtomicInteger();
+    private static final LongAdder suppressedErrorLogs = new LongAdder();
+
+    /**
+     * 格式化输出共用的Mapper与Writer, 与原有行为一致使用默认配置的ObjectMapper
+     */
+    private static final ObjectMapper PRETTY_MAPPER = new ObjectMapper();
+    private static final ObjectWriter PRETTY_WRITER = PRETTY_MAPPER.writer(createPrettyPrinter());
+
     private final ObjectMapper mapper;
 
+    private final LRUMap<CacheKey, ObjectReader> readers = new LRUMap<>(16, MAX_CACHED);
+    private final LRUMap<CacheKey, ObjectWriter> writers = new LRUMap<>(16, MAX_CACHED);
+
     public JsonMapper() {
-        this(null);
+        this((Include) null);
     }
 
     public JsonMapper(Include include) {
-        mapper = new ObjectMapper();
+        this(null, include);
+    }
+
+    /**
+     * 使用指定格式的JsonFactory构造, 例如Jackson二进制格式的SmileFactory、CBORFactory或MessagePackFactory,
+     * 通过{@link #toBytes(Object)}与{@link #fromBytes(byte[], Class)}读写, String相关的方法只适用于文本格式.
+     *
+     * @param factory 数据格式, 为null时使用JSON
+     * @param include 输出时包含属性的风格, 可以为null
+     */
+    public JsonMapper(JsonFactory factory, Include include) {
+        mapper = new ObjectMapper(factory);
         //设置输出时包含属性的风格
         if (include != null) {
             mapper.setSerializationInclusion(include);
@@ -37,6 +97,18 @@ public class JsonMapper {
         mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
     }
 
+    private JsonMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * 包装已有的ObjectMapper, 不修改其配置, 例如Spring管理的ObjectMapper,
+     * 与HTTP消息转换共用同一份配置及序列化器缓存.
+     */
+    public static JsonMapper of(ObjectMapper mapper) {
+        return new JsonMapper(Objects.requireNonNull(mapper));
+    }
+
     /**
      * 创建只输出非Null且非Empty(如List.isEmpty)的属性到Json字符串的Mapper,建议在外部接口中使用.
      */
@@ -51,6 +123,14 @@ public class JsonMapper {
         return new JsonMapper(Include.NON_DEFAULT);
     }
 
+    private static DefaultPrettyPrinter createPrettyPrinter() {
+        DefaultPrettyPrinter.Indenter indenter = new DefaultIndenter("    ", DefaultIndenter.SYS_LF);
+        DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
+        printer.indentObjectsWith(indenter);
+        printer.indentArraysWith(indenter);
+        return printer;
+    }
+
     /**
      * Object可以是POJO，也可以是Collection或数组。
      * 如果对象为Null, 返回"null".
@@ -65,18 +145,57 @@ public class JsonMapper {
         }
     }
 
+    /**
+     * 只输出指定视图({@link com.fasterxml.jackson.annotation.JsonView})中的属性
+     */
+    public String toJson(Object object, Class<?> view) {
+        try {
+            return writer(null, view).writeValueAsString(object);
+        } catch (IOException e) {
+            log.error("write to json string error:" + object, e);
+            return null;
+        }
+    }
+
+    /**
+     * 序列化为字节数组, JSON格式时为UTF-8编码, 不经过String
+     */
+    public byte[] toJsonBytes(Object object) {
+        try {
+            return mapper.writeValueAsBytes(object);
+        } catch (IOException e) {
+            log.error("write to bytes error:" + object, e);
+            return null;
+        }
+    }
+
+    /**
+     * 同{@link #toJsonBytes(Object)}, 用于二进制格式时名称更直观
+     */
+    public byte[] toBytes(Object object) {
+        return toJsonBytes(object);
+    }
+
+    /**
+     * 序列化后写入输出流, 不关闭流
+     */
+    public void toJson(OutputStream out, Object object) throws IOException {
+        mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, object);
+    }
+
+    /**
+     * 序列化后写入ByteBuffer, 空间不足时抛出{@link java.nio.BufferOverflowException}
+     */
+    public void toJson(ByteBuffer buffer, Object object) throws IOException {
+        toJson(new ByteBufferBackedOutputStream(buffer), object);
+    }
+
     /**
      * 将json字符串格式化后输出
      */
     public String toPrettyJson(Object object) {
-        DefaultPrettyPrinter.Indenter indenter = new DefaultIndenter("    ", DefaultIndenter.SYS_LF);
-        DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
-        printer.indentObjectsWith(indenter);
-        printer.indentArraysWith(indenter);
-
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return mapper.writer(printer).writeValueAsString(object);
+            return PRETTY_WRITER.writeValueAsString(object);
         } catch (IOException e) {
             log.error("write to json string error:" + object, e);
             return null;
@@ -84,9 +203,8 @@ public class JsonMapper {
     }
 
     public String toPrettyJson(String json) {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            Object obj = mapper.readValue(json, Object.class);
+            Object obj = PRETTY_MAPPER.readValue(json, Object.class);
             return toPrettyJson(obj);
         } catch (IOException e) {
             log.error("convert to pretty json error: " + json, e);
@@ -110,9 +228,9 @@ public class JsonMapper {
         }
 
         try {
-            return mapper.readValue(jsonString, clazz);
+            return reader(clazz).readValue(jsonString);
         } catch (IOException e) {
-            log.warn("parse json string error:" + jsonString, e);
+            logParseError("parse json string error", jsonString, e);
             return null;
         }
     }
@@ -127,9 +245,9 @@ public class JsonMapper {
             return null;
         }
         try {
-            return mapper.readValue(jsonString, javaType);
+            return reader(javaType).readValue(jsonString);
         } catch (IOException e) {
-            log.warn("parse json string error:" + jsonString, e);
+            logParseError("parse json string error", jsonString, e);
             return null;
         }
     }
@@ -145,13 +263,194 @@ public class JsonMapper {
             return null;
         }
         try {
-            return mapper.readValue(jsonString, valueTypeRef);
+            return reader(mapper.constructType(valueTypeRef)).readValue(jsonString);
+        } catch (IOException e) {
+            logParseError("parse json string error", jsonString, e);
+            return null;
+        }
+    }
+
+    /**
+     * 从字节数组反序列化, 数组为null或空时返回null
+     */
+    public <T> T fromJson(byte[] json, Class<T> clazz) {
+        return fromJson(json, mapper.constructType(clazz));
+    }
+
+    public <T> T fromJson(byte[] json, JavaType javaType) {
+        if (json == null || json.length == 0) {
+            return null;
+        }
+        try {
+            return reader(javaType).readValue(json);
+        } catch (IOException e) {
+            logParseError("parse bytes error, length: " + json.length, null, e);
+            return null;
+        }
+    }
+
+    /**
+     * 从ByteBuffer的position到limit反序列化, 不改变ByteBuffer的position
+     */
+    public <T> T fromJson(ByteBuffer json, Class<T> clazz) {
+        if (json == null || !json.hasRemaining()) {
+            return null;
+        }
+        try {
+            ObjectReader reader = reader(clazz);
+            if (json.hasArray()) {
+                return reader.readValue(json.array(), json.arrayOffset() + json.position(), json.remaining());
+            }
+            return reader.readValue(new ByteBufferBackedInputStream(json.duplicate()));
         } catch (IOException e) {
-            log.warn("parse json string error:" + jsonString, e);
+            logParseError("parse bytes error, length: " + json.remaining(), null, e);
             return null;
         }
     }
 
+    /**
+     * 同{@link #fromJson(byte[], Class)}, 用于二进制格式时名称更直观
+     */
+    public <T> T fromBytes(byte[] bytes, Class<T> clazz) {
+        return fromJson(bytes, clazz);
+    }
+
+    public <T> T fromBytes(byte[] bytes, JavaType javaType) {
+        return fromJson(bytes, javaType);
+    }
+
+    /**
+     * 同{@link #fromJson(ByteBuffer, Class)}
+     */
+    public <T> T fromBytes(ByteBuffer bytes, Class<T> clazz) {
+        return fromJson(bytes, clazz);
+    }
+
+    /**
+     * 从输入流反序列化, 不关闭流
+     */
+    public <T> T fromJson(InputStream in, Class<T> clazz) throws IOException {
+        return fromJson(in, mapper.constructType(clazz));
+    }
+
+    public <T> T fromJson(InputStream in, JavaType javaType) throws IOException {
+        return reader(javaType).without(JsonParser.Feature.AUTO_CLOSE_SOURCE).readValue(in);
+    }
+
+    /**
+     * 流式逐个读取JSON数组的元素(或以空白分隔的多个JSON值), 内存中只保留当前元素, 适合读取很大的数据.
+     * 使用完后应关闭返回的迭代器, 会同时关闭输入流.
+     *
+     * @param in    输入流
+     * @param clazz 元素类型
+     */
+    public <T> MappingIterator<T> readValues(InputStream in, Class<T> clazz) throws IOException {
+        return reader(clazz).readValues(in);
+    }
+
+    /**
+     * 反序列化并返回结果, 失败时不记录日志, 结果中包含错误信息及出错位置.
+     * 适合处理外部输入, 调用者自行决定如何处理非法输入.
+     * <p>
+     * 如果JSON字符串为Null或空白, 返回值为Null的成功结果.
+     */
+    public <T> ParseResult<T> tryFromJson(String jsonString, Class<T> clazz) {
+        return tryFromJson(jsonString, mapper.constructType(clazz));
+    }
+
+    public <T> ParseResult<T> tryFromJson(String jsonString, TypeReference<T> valueTypeRef) {
+        return tryFromJson(jsonString, mapper.constructType(valueTypeRef));
+    }
+
+    public <T> ParseResult<T> tryFromJson(String jsonString, JavaType javaType) {
+        if (StringUtils.isBlank(jsonString)) {
+            return ParseResult.success(null);
+        }
+        try {
+            return ParseResult.success(reader(javaType).readValue(jsonString));
+        } catch (IOException e) {
+            return ParseResult.failure(e);
+        }
+    }
+
+    /**
+     * 从字节数组反序列化并返回结果, 失败时不记录日志
+     */
+    public <T> ParseResult<T> tryFromBytes(byte[] json, Class<T> clazz) {
+        if (json == null || json.length == 0) {
+            return ParseResult.success(null);
+        }
+        try {
+            return ParseResult.success(reader(clazz).readValue(json));
+        } catch (IOException e) {
+            return ParseResult.failure(e);
+        }
+    }
+
+    /**
+     * 只读取指定视图({@link com.fasterxml.jackson.annotation.JsonView})中的属性
+     */
+    public <T> T fromJson(String jsonString, Class<T> clazz, Class<?> view) {
+        if (StringUtils.isBlank(jsonString)) {
+            return null;
+        }
+        try {
+            return reader(mapper.constructType(clazz), view).readValue(jsonString);
+        } catch (IOException e) {
+            logParseError("parse json string error", jsonString, e);
+            return null;
+        }
+    }
+
+    /**
+     * 缓存的类型对应的ObjectReader
+     */
+    public ObjectReader reader(Class<?> clazz) {
+        return reader(mapper.constructType(clazz), null);
+    }
+
+    public ObjectReader reader(JavaType javaType) {
+        return reader(javaType, null);
+    }
+
+    /**
+     * 缓存的类型及视图对应的ObjectReader
+     *
+     * @param javaType 目标类型
+     * @param view     视图, 可以为null
+     */
+    public ObjectReader reader(JavaType javaType, Class<?> view) {
+        CacheKey key = new CacheKey(javaType, view);
+        ObjectReader reader = readers.get(key);
+        if (reader == null) {
+            reader = mapper.readerFor(javaType);
+            if (view != null) {
+                reader = reader.withView(view);
+            }
+            readers.put(key, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * 缓存的类型及视图对应的ObjectWriter
+     *
+     * @param javaType 声明的类型, 为null时按运行时类型输出
+     * @param view     视图, 可以为null
+     */
+    public ObjectWriter writer(JavaType javaType, Class<?> view) {
+        CacheKey key = new CacheKey(javaType, view);
+        ObjectWriter writer = writers.get(key);
+        if (writer == null) {
+            writer = javaType != null ? mapper.writerFor(javaType) : mapper.writer();
+            if (view != null) {
+                writer = writer.withView(view);
+            }
+            writers.put(key, writer);
+        }
+        return writer;
+    }
+
     /**
      * 构造泛型的Collection Type如:
      * {@code ArrayList<MyBean>}, 则调用constructCollectionType(ArrayList.class,MyBean.class)
@@ -168,7 +467,7 @@ public class JsonMapper {
         try {
             return mapper.readerForUpdating(object).readValue(jsonString);
         } catch (IOException e) {
-            log.warn("update json string:" + jsonString + " to object:" + object + " error.", e);
+            logParseError("update json string to object: " + object + " error", jsonString, e);
         }
         return null;
     }
@@ -188,12 +487,101 @@ public class JsonMapper {
     public void enableEnumUseToString() {
         mapper.enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
         mapper.enable(DeserializationFeature.READ_ENUMS_USING_TO_STRING);
+        clearCache();
+    }
+
+    /**
+     * 注册Jackson Blackbird模块, 以LambdaMetafactory生成的访问器代替反射读写属性, 提高POJO的序列化性能.
+     * 需要依赖jackson-module-blackbird, 注意本函数一定要在所有的读写动作之前调用。
+     *
+     * @throws IllegalStateException 没有依赖jackson-module-blackbird时
+     */
+    public void enableBlackbird() {
+        try {
+            mapper.registerModule(BlackbirdSupport.module());
+        } catch (NoClassDefFoundError e) {
+            throw new IllegalStateException("jackson-module-blackbird is not on the classpath", e);
+        }
+        clearCache();
+    }
+
+    /**
+     * 预先创建类型的序列化器与反序列化器并缓存对应的ObjectReader/ObjectWriter,
+     * 避免首次请求时的解析开销, 应在启动时对实体类等常用类型调用.
+     */
+    public void warmUp(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            JavaType javaType = mapper.constructType(clazz);
+            reader(javaType, null);
+            writer(javaType, null);
+        }
+    }
+
+    /**
+     * 清空缓存的ObjectReader/ObjectWriter, 通过{@link #getMapper()}修改配置后需要调用
+     */
+    public void clearCache() {
+        readers.clear();
+        writers.clear();
     }
 
     /**
      * 取出Mapper做进一步的设置或使用其他序列化API.
+     * 修改配置后需要调用{@link #clearCache()}, 已缓存的ObjectReader/ObjectWriter保留的是旧配置.
      */
     public ObjectMapper getMapper() {
         return mapper;
     }
+
+    /**
+     * 记录解析失败的日志, 每秒最多{@value #MAX_ERROR_LOGS_PER_SECOND}条, 其余只计数并在下次记录时报告.
+     * 输入截断为{@value #MAX_LOGGED_INPUT_LENGTH}个字符, 异常堆栈只在DEBUG级别记录.
+     */
+    private static void logParseError(String message, String input, IOException e) {
+        if (!log.isWarnEnabled()) {
+            return;
+        }
+
+        long window = System.currentTimeMillis() / 1000;
+        long current = errorLogWindow.get();
+        if (window != current && errorLogWindow.compareAndSet(current, window)) {
+            errorLogCount.set(0);
+        }
+        if (errorLogCount.incrementAndGet() > MAX_ERROR_LOGS_PER_SECOND) {
+            suppressedErrorLogs.increment();
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder(message);
+        if (input != null) {
+            sb.append(": ").append(StringUtils.abbreviate(input, MAX_LOGGED_INPUT_LENGTH));
+        }
+        sb.append(", cause: ").append(e instanceof JsonProcessingException jpe ? jpe.getOriginalMessage() : e.getMessage());
+        if (e instanceof JsonProcessingException jpe && jpe.getLocation() != null) {
+            sb.append(" at line ").append(jpe.getLocation().getLineNr())
+                    .append(", column ").append(jpe.getLocation().getColumnNr());
+        }
+        long suppressed = suppressedErrorLogs.sumThenReset();
+        if (suppressed > 0) {
+            sb.append(" (").append(suppressed).append(" similar errors suppressed)");
+        }
+
+        if (log.isDebugEnabled()) {
+            log.warn(sb.toString(), e);
+        } else {
+            log.warn(sb.toString());
+        }
+    }
+
+    /**
+     * 隔离对可选依赖的引用, 没有jackson-module-blackbird时JsonMapper仍可正常加载
+     */
+    private static class BlackbirdSupport {
+        static Module module() {
+            return new BlackbirdModule();
+        }
+    }
+
+    private record CacheKey(JavaType type, Class<?> view) {
+    }
 }
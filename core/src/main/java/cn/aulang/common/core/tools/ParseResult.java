@@ -0,0 +1,56 @@
+package cn.aulang.common.core.tools;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * 反序列化的结果, 失败时包含错误信息及出错位置, 不需要捕获异常或记录日志
+ *
+ * @param succeeded 是否成功, 不依据错误信息是否为null判断
+ * @param value     反序列化的对象, 失败或输入为空时为null
+ * @param error     错误信息, 成功时为null, 失败时不为null
+ * @param line      出错的行号(从1开始), 未知时为-1
+ * @param column    出错的列号(从1开始), 未知时为-1
+ * @param offset    出错位置的字符或字节偏移, 未知时为-1
+ */
+public record ParseResult<T>(boolean succeeded, T value, String error, int line, int column, long offset) {
+
+    public static <T> ParseResult<T> success(T value) {
+        return new ParseResult<>(true, value, null, -1, -1, -1);
+    }
+
+    public static <T> ParseResult<T> failure(IOException e) {
+        if (e instanceof JsonProcessingException jpe && jpe.getLocation() != null) {
+            JsonLocation location = jpe.getLocation();
+            long offset = location.getCharOffset() >= 0 ? location.getCharOffset() : location.getByteOffset();
+            return new ParseResult<>(false, null, message(jpe.getOriginalMessage(), e),
+                    location.getLineNr(), location.getColumnNr(), offset);
+        }
+        return new ParseResult<>(false, null, message(e.getMessage(), e), -1, -1, -1);
+    }
+
+    /**
+     * 异常没有信息时使用异常类名, 失败结果的错误信息总是不为null
+     */
+    private static String message(String message, IOException e) {
+        return message != null ? message : e.getClass().getName();
+    }
+
+    public boolean isSuccess() {
+        return succeeded;
+    }
+
+    /**
+     * 成功时返回对象, 失败时返回默认值
+     */
+    public T orElse(T other) {
+        return isSuccess() ? value : other;
+    }
+
+    public Optional<T> toOptional() {
+        return Optional.ofNullable(value);
+    }
+}
@@ -1,28 +1,59 @@
 package cn.aulang.common.core.tools;
 
 import cn.aulang.common.core.utils.Systems;
-import org.apache.commons.lang3.StringUtils;
 
-import java.lang.management.ManagementFactory;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
 
 /**
  * Twitter Snowflake
  * <p>
- * SnowFlake的结构如下:
+ * SnowFlake的结构如下(默认):
  * +------+----------------------+----------------+-----------+
  * | sign |     delta seconds    | worker node id | sequence  |
  * +------+----------------------+----------------+-----------+
- * 1bit         29bits               21bits        13bits
+ * 1bit         29bits               10bits        13bits
+ * <p>
+ * 各部分位数、时间单位(秒或毫秒)及开始时间可以通过{@link #builder()}配置,
+ * 例如高吞吐服务使用毫秒及更多的序列位数, 大集群使用更多的工作机器位数.
+ * <p>
+ * 默认时钟回退即拒绝生成ID, {@link Builder#maxBackwardMillis(long)}允许小的回退(如NTP校时):
+ * 回退期间继续使用上次的时间及剩余的序列, 序列用完则等待时钟追上, 超过阈值才拒绝, ID始终单调递增.
+ * <p>
+ * 工作机器ID依次取自: {@link Builder#workerId(long)}, {@link Builder#workerIdAssigner(WorkerIdAssigner)},
+ * 节点ID与进程号的散列, 系统属性{@value ExplicitWorkerIdAssigner#PROPERTY_NAME}或环境变量
+ * {@value ExplicitWorkerIdAssigner#ENV_NAME}, 最后才是MAC地址与进程号的散列(需要枚举网卡, 多实例时可能冲突).
  */
 public class Snowflake {
 
-    private static final long MAX_MACHINE_ID = 31;
+    /**
+     * 默认开始时间截 (2021-11-01 09:00:00.000)
+     */
+    private static final long DEFAULT_EPOCH_MILLIS = 1635728400000L;
+
+    /**
+     * 进程内共享的实例, 通过{@link #install(Snowflake)}指定或首次使用时创建
+     */
+    private static volatile Snowflake shared;
+
+    /**
+     * 开始时间截, 以timeUnit为单位
+     */
+    private final long epoch;
 
     /**
-     * 开始时间截 (2021-11-01 09:00:00.000)
+     * 时间单位, 秒或毫秒
      */
-    private final long epoch = TimeUnit.MILLISECONDS.toSeconds(1635728400000L);
+    private final TimeUnit timeUnit;
+
+    /**
+     * 毫秒时钟
+     */
+    private final LongSupplier clock;
 
     /**
      * 服务器原始ID
@@ -30,24 +61,42 @@ public class Snowflake {
     private final long machineId;
 
     /**
-     * 工作机器ID(0~31)
+     * 工作机器ID(0~maxWorkerId)
      */
     private final long workerId;
 
     /**
-     * 毫秒内序列(0~4095)
+     * 工作机器ID分配器, 持有以保证其租约(如文件锁)在生成器存活期间有效, 租约失效后拒绝生成ID
      */
-    private long sequence = 0L;
+    private final WorkerIdAssigner workerIdAssigner;
 
     /**
-     * 上次生成ID的时间截
+     * 上次生成ID的相对时间与序列, 打包为 (deltaTime << sequenceBits) | sequence, 通过CAS推进
      */
-    private long lastTimestamp = -1L;
+    private final AtomicLong state = new AtomicLong();
 
     private final BitsAllocator bitsAllocator;
 
+    /**
+     * 允许的时钟回退, 以timeUnit为单位
+     */
+    private final long maxBackward;
+
+    /**
+     * 时钟回退期间生成的ID数(在CAS成功后累加, 重试不重复计数)与因回退过大拒绝的次数
+     */
+    private final LongAdder clockBackwardsIds = new LongAdder();
+    private final LongAdder clockBackwardsRejected = new LongAdder();
+
+    /**
+     * 时钟回退的次数, 一次回退从发现时钟早于上次的时间开始, 到时钟追上为止, 期间只计数一次.
+     * 回退期间上次的时间保持不变, 以发现回退时上次的时间区分不同的回退
+     */
+    private final LongAdder clockBackwardsEvents = new LongAdder();
+    private final AtomicLong lastBackwardsDelta = new AtomicLong(-1);
+
     public Snowflake() {
-        this(generateMachineId());
+        this(builder());
     }
 
     /**
@@ -56,107 +105,331 @@ public class Snowflake {
      * @param machineId 节点ID，注意，如果一个节点有多个实例部署，请注意区分
      */
     public Snowflake(long machineId) {
-        this.machineId = machineId;
-        this.workerId = getWorkerId(machineId);
+        this(builder().machineId(machineId));
+    }
+
+    protected Snowflake(Builder builder) {
+        builder.validate();
+        this.timeUnit = builder.timeUnit;
+        this.clock = builder.clock;
+        this.epoch = timeUnit.convert(builder.epochMillis, TimeUnit.MILLISECONDS);
+        long unitMillis = timeUnit.toMillis(1);
+        this.maxBackward = (builder.maxBackwardMillis + unitMillis - 1) / unitMillis;
 
         // 创建ID位数分配器
-        this.bitsAllocator = new BitsAllocator(29, 10, 13);
-        if (workerId > bitsAllocator.getMaxWorkerId()) {
+        this.bitsAllocator = new BitsAllocator(builder.timestampBits, builder.workerIdBits, builder.sequenceBits);
+
+        long maxWorkerId = bitsAllocator.getMaxWorkerId();
+        WorkerIdAssigner assigner = builder.workerIdAssigner;
+        if (assigner == null && builder.workerId == null && builder.machineId == null) {
+            ExplicitWorkerIdAssigner explicit = new ExplicitWorkerIdAssigner();
+            if (explicit.isConfigured()) {
+                assigner = explicit;
+            }
+        }
+        this.workerIdAssigner = builder.workerId == null ? assigner : null;
+
+        if (builder.workerId != null) {
+            this.machineId = builder.workerId;
+            this.workerId = builder.workerId;
+        } else if (assigner != null) {
+            this.workerId = assigner.assignWorkerId(maxWorkerId);
+            this.machineId = workerId;
+        } else {
+            this.machineId = builder.machineId != null ? builder.machineId : generateMachineId();
+            this.workerId = getWorkerId(machineId, maxWorkerId);
+        }
+        if (workerId < 0 || workerId > bitsAllocator.getMaxWorkerId()) {
             throw new IllegalArgumentException(
                     String.format("worker Id can't be greater than %d or less than 0", bitsAllocator.getMaxWorkerId()));
         }
     }
 
-    private static long generateMachineId() {
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 进程内共享的Snowflake, 未通过{@link #install(Snowflake)}指定时在首次调用时创建默认实例
+     * <p>
+     * 同一进程内的多个生成器可能得到相同的工作机器ID而序列互不协调, 应尽量使用共享实例
+     */
+    public static Snowflake shared() {
+        Snowflake snowflake = shared;
+        if (snowflake == null) {
+            synchronized (Snowflake.class) {
+                snowflake = shared;
+                if (snowflake == null) {
+                    shared = snowflake = new Snowflake();
+                }
+            }
+        }
+        return snowflake;
+    }
+
+    /**
+     * 指定进程内共享的Snowflake(如使用{@link CachedSnowflake}或数据库分配的工作机器ID),
+     * 只能在首次调用{@link #shared()}之前指定一次, Identities与LongIdGenId随之使用该实例
+     *
+     * @param snowflake 共享的Snowflake
+     * @throws IllegalStateException 已经指定过或共享实例已被使用
+     */
+    public static synchronized void install(Snowflake snowflake) {
+        Objects.requireNonNull(snowflake, "snowflake");
+        if (shared != null) {
+            throw new IllegalStateException("The shared Snowflake is already installed or in use");
+        }
+        shared = snowflake;
+    }
+
+    static long generateMachineId() {
         try {
             byte[] mac = Systems.getMacAddressWithIpv4();
-            long id = ((0xFF & (long) mac[mac.length - 2])
+            return ((0xFF & (long) mac[mac.length - 2])
                     | (0xFF00 & (((long) mac[mac.length - 1]) << 8))) >> 6;
-            id = id % (MAX_MACHINE_ID + 1);
-            return id;
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
     }
 
-    private static long getWorkerId(long datacenterId) {
+    private static long getWorkerId(long datacenterId, long maxWorkerId) {
         StringBuilder sb = new StringBuilder();
         sb.append(datacenterId);
-        String name = ManagementFactory.getRuntimeMXBean().getName();
-        if (StringUtils.isNotBlank(name)) {
-            sb.append(name.split("@")[0]);
-        }
+        sb.append(ProcessHandle.current().pid());
 
-        return (sb.toString().hashCode() & 0xFFFF) % (MAX_MACHINE_ID + 1);
+        return (sb.toString().hashCode() & 0x7FFFFFFF) % (maxWorkerId + 1);
     }
 
     public long getMachineId() {
         return machineId;
     }
 
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    /**
+     * 时钟回退期间仍然生成的ID数, 每个ID计数一次
+     */
+    public long getClockBackwardsIdCount() {
+        return clockBackwardsIds.sum();
+    }
+
+    /**
+     * 时钟回退的次数, 无论回退期间生成了多少ID或拒绝了多少次, 每次回退只计数一次
+     */
+    public long getClockBackwardsEventCount() {
+        return clockBackwardsEvents.sum();
+    }
+
+    /**
+     * 时钟回退超过阈值而拒绝生成ID的次数
+     */
+    public long getClockBackwardsRejectedCount() {
+        return clockBackwardsRejected.sum();
+    }
+
     /**
      * 获得下一个ID (该方法是线程安全的)
+     * <p>
+     * 无锁实现: 上次的时间与序列保存在同一个AtomicLong中, 通过CAS一次推进, 不分配对象
      *
      * @return SnowflakeId
      */
-    public synchronized long nextId() {
-        long timestamp = timeGen();
+    public long nextId() {
+        checkWorkerId();
+        int sequenceBits = bitsAllocator.getSequenceBits();
+        long maxSequence = bitsAllocator.getMaxSequence();
+
+        for (; ; ) {
+            long current = state.get();
+            long lastDelta = current >>> sequenceBits;
+            long delta = timeGen() - epoch;
+
+            // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过，超过阈值时应当抛出异常
+            boolean backwards = delta < lastDelta;
+            if (backwards) {
+                checkBackwards(lastDelta, delta);
+                // 回退在阈值内，继续使用上次的时间
+                delta = lastDelta;
+            }
 
-        // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException(String.format(
-                    "Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+            long next;
+            if (delta > lastDelta) {
+                // 时间戳改变，序列重置
+                next = delta << sequenceBits;
+            } else if ((current & maxSequence) < maxSequence) {
+                // 同一时间生成的，则进行序列自增
+                next = current + 1;
+            } else {
+                // 序列溢出，等待到下一个时间单位
+                tilNextTime(lastDelta);
+                continue;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                if (backwards) {
+                    clockBackwardsIds.increment();
+                }
+                // Allocate bits for UID
+                return bitsAllocator.allocate(next >>> sequenceBits, workerId, next & maxSequence);
+            }
+        }
+    }
+
+    /**
+     * 批量获得ID (该方法是线程安全的)
+     *
+     * @param n ID数量
+     * @return 单调递增的SnowflakeId数组
+     * @see #nextIds(long[])
+     */
+    public long[] nextIds(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n can't be less than 0: " + n);
         }
+        long[] ids = new long[n];
+        nextIds(ids);
+        return ids;
+    }
 
-        // 如果是同一时间生成的，则进行毫秒内序列
-        if (lastTimestamp == timestamp) {
-            sequence = (sequence + 1) & bitsAllocator.getMaxSequence();
-            // 毫秒内序列溢出
-            if (sequence == 0) {
-                // 阻塞到下一个毫秒,获得新的时间戳
-                timestamp = tilNextMillis(lastTimestamp);
+    /**
+     * 批量获得ID并填满数组 (该方法是线程安全的)
+     * <p>
+     * 每次CAS预留一个时间单位内剩余的全部连续序列, 不需要逐个生成, 适合批量插入时预先分配ID
+     *
+     * @param ids 用于存放ID的数组
+     */
+    public void nextIds(long[] ids) {
+        checkWorkerId();
+        int sequenceBits = bitsAllocator.getSequenceBits();
+        long maxSequence = bitsAllocator.getMaxSequence();
+
+        int filled = 0;
+        while (filled < ids.length) {
+            long current = state.get();
+            long lastDelta = current >>> sequenceBits;
+            long delta = timeGen() - epoch;
+
+            boolean backwards = delta < lastDelta;
+            if (backwards) {
+                checkBackwards(lastDelta, delta);
+                delta = lastDelta;
+            }
+
+            long first;
+            if (delta > lastDelta) {
+                first = delta << sequenceBits;
+            } else if ((current & maxSequence) < maxSequence) {
+                first = current + 1;
+            } else {
+                tilNextTime(lastDelta);
+                continue;
+            }
+
+            // 预留当前时间单位内的连续序列 [first, first + count)
+            int count = (int) Math.min(maxSequence - (first & maxSequence) + 1, ids.length - filled);
+            if (state.compareAndSet(current, first + count - 1)) {
+                if (backwards) {
+                    clockBackwardsIds.add(count);
+                }
+                long deltaTime = first >>> sequenceBits;
+                long sequence = first & maxSequence;
+                for (int i = 0; i < count; i++) {
+                    ids[filled++] = bitsAllocator.allocate(deltaTime, workerId, sequence + i);
+                }
             }
-        } else { // 时间戳改变，毫秒内序列重置
-            sequence = 0L;
         }
+    }
 
-        // 上次生成ID的时间截
-        lastTimestamp = timestamp;
+    /**
+     * 工作机器ID不再有效(如数据库租约丢失)时拒绝生成ID, 避免与接管该ID的实例重复
+     */
+    final void checkWorkerId() {
+        if (workerIdAssigner != null && !workerIdAssigner.isValid()) {
+            throw new IllegalStateException(String.format(
+                    "Worker id %d is no longer valid. Refusing to generate id", workerId));
+        }
+    }
 
-        // Allocate bits for UID
-        return bitsAllocator.allocate(timestamp - epoch, workerId, sequence);
+    /**
+     * 记录一次时钟回退, 超过阈值时拒绝生成ID
+     */
+    private void checkBackwards(long lastDelta, long delta) {
+        long last = lastBackwardsDelta.get();
+        if (last != lastDelta && lastBackwardsDelta.compareAndSet(last, lastDelta)) {
+            clockBackwardsEvents.increment();
+        }
+        if (lastDelta - delta > maxBackward) {
+            clockBackwardsRejected.increment();
+            throw new RuntimeException(String.format(
+                    "Clock moved backwards.  Refusing to generate id for %d %s", lastDelta - delta, timeUnit));
+        }
     }
 
     /**
-     * 阻塞到下一个毫秒，直到获得新的时间戳
+     * 等待到下一个时间单位，直到获得新的时间戳，时钟回退时会等待到时钟追上
      *
-     * @param lastTimestamp 上次生成ID的时间截
-     * @return 当前时间戳
+     * @param lastDelta 上次生成ID的相对时间
      */
-    private long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
+    private void tilNextTime(long lastDelta) {
+        while (timeGen() - epoch <= lastDelta) {
+            LockSupport.parkNanos(100_000L);
         }
-        return timestamp;
     }
 
     /**
-     * 返回以毫秒为单位的当前时间
+     * 当前时间相对开始时间的差值
+     */
+    final long currentDelta() {
+        return timeGen() - epoch;
+    }
+
+    /**
+     * 时间差值的最大值
+     */
+    final long maxDelta() {
+        return bitsAllocator.getMaxDeltaTime();
+    }
+
+    /**
+     * 时间单位内序列的最大值
+     */
+    final long maxSequence() {
+        return bitsAllocator.getMaxSequence();
+    }
+
+    /**
+     * 按当前工作机器ID组装ID
+     *
+     * @param delta    时间差值
+     * @param sequence 序列
+     * @return 分布式ID
+     */
+    final long allocate(long delta, long sequence) {
+        return bitsAllocator.allocate(delta, workerId, sequence);
+    }
+
+    /**
+     * 返回以timeUnit为单位的当前时间
      *
-     * @return 当前时间(毫秒)
+     * @return 当前时间
      */
     private long timeGen() {
-        long currentSecond = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-        if (currentSecond - epoch > bitsAllocator.getMaxDeltaSeconds()) {
-            throw new RuntimeException("Timestamp bits is exhausted. Refusing UID generate. Now: " + currentSecond);
+        long current = timeUnit.convert(clock.getAsLong(), TimeUnit.MILLISECONDS);
+        if (current - epoch > bitsAllocator.getMaxDeltaTime()) {
+            throw new RuntimeException("Timestamp bits is exhausted. Refusing UID generate. Now: " + current);
         }
-        return currentSecond;
+        return current;
     }
 
     /**
      * Allocate 64 bits for the UID(long)<br>
-     * sign (fixed 1bit) -> deltaSecond -> workerId -> sequence(within the same second)
+     * sign (fixed 1bit) -> deltaTime -> workerId -> sequence(within the same time unit)
      */
     private static class BitsAllocator {
 
@@ -165,11 +438,12 @@ public class Snowflake {
          */
         private final int timestampShift;
         private final int workerIdShift;
+        private final int sequenceBits;
 
         /**
          * Max value for workId & sequence
          */
-        private final long maxDeltaSeconds;
+        private final long maxDeltaTime;
         private final long maxWorkerId;
         private final long maxSequence;
 
@@ -181,15 +455,16 @@ public class Snowflake {
             // initialize shift
             this.timestampShift = workerIdBits + sequenceBits;
             this.workerIdShift = sequenceBits;
+            this.sequenceBits = sequenceBits;
 
             // initialize max value
-            this.maxDeltaSeconds = ~(-1L << timestampBits);
+            this.maxDeltaTime = ~(-1L << timestampBits);
             this.maxWorkerId = ~(-1L << workerIdBits);
             this.maxSequence = ~(-1L << sequenceBits);
         }
 
-        public long getMaxDeltaSeconds() {
-            return maxDeltaSeconds;
+        public long getMaxDeltaTime() {
+            return maxDeltaTime;
         }
 
         public long getMaxWorkerId() {
@@ -200,17 +475,145 @@ public class Snowflake {
             return maxSequence;
         }
 
+        public int getSequenceBits() {
+            return sequenceBits;
+        }
+
         /**
-         * Allocate bits for UID according to delta seconds & workerId & sequence<br>
+         * Allocate bits for UID according to delta time & workerId & sequence<br>
          * <b>Note that: </b>The highest bit will always be 0 for sign
          *
-         * @param deltaSeconds 时间戳相差毫秒数
+         * @param deltaTime    时间戳相差的时间单位数
          * @param workerId     工作机器ID
-         * @param sequence     毫秒内序列
+         * @param sequence     时间单位内序列
          * @return 分布式ID
          */
-        public long allocate(long deltaSeconds, long workerId, long sequence) {
-            return (deltaSeconds << timestampShift) | (workerId << workerIdShift) | sequence;
+        public long allocate(long deltaTime, long workerId, long sequence) {
+            return (deltaTime << timestampShift) | (workerId << workerIdShift) | sequence;
+        }
+    }
+
+    /**
+     * Snowflake构造器, 默认为29位秒级时间、10位工作机器ID、13位序列, 开始时间2021-11-01 09:00:00
+     */
+    public static final class Builder {
+
+        private int timestampBits = 29;
+        private int workerIdBits = 10;
+        private int sequenceBits = 13;
+        private TimeUnit timeUnit = TimeUnit.SECONDS;
+        private long epochMillis = DEFAULT_EPOCH_MILLIS;
+        private long maxBackwardMillis;
+        private Long machineId;
+        private Long workerId;
+        private WorkerIdAssigner workerIdAssigner;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder() {
+        }
+
+        /**
+         * 时间位数, 时间位数、工作机器ID位数、序列位数之和不能超过63
+         */
+        public Builder timestampBits(int timestampBits) {
+            this.timestampBits = timestampBits;
+            return this;
+        }
+
+        public Builder workerIdBits(int workerIdBits) {
+            this.workerIdBits = workerIdBits;
+            return this;
+        }
+
+        public Builder sequenceBits(int sequenceBits) {
+            this.sequenceBits = sequenceBits;
+            return this;
+        }
+
+        /**
+         * 时间单位, 只支持秒或毫秒
+         */
+        public Builder timeUnit(TimeUnit timeUnit) {
+            if (timeUnit != TimeUnit.SECONDS && timeUnit != TimeUnit.MILLISECONDS) {
+                throw new IllegalArgumentException("timeUnit must be SECONDS or MILLISECONDS: " + timeUnit);
+            }
+            this.timeUnit = timeUnit;
+            return this;
+        }
+
+        /**
+         * 开始时间截(毫秒)
+         */
+        public Builder epoch(long epochMillis) {
+            if (epochMillis < 0 || epochMillis > System.currentTimeMillis()) {
+                throw new IllegalArgumentException("epoch must be in the past: " + epochMillis);
+            }
+            this.epochMillis = epochMillis;
+            return this;
+        }
+
+        /**
+         * 允许的时钟回退毫秒数, 默认为0即任何回退都拒绝生成ID
+         */
+        public Builder maxBackwardMillis(long maxBackwardMillis) {
+            if (maxBackwardMillis < 0) {
+                throw new IllegalArgumentException("maxBackwardMillis can't be less than 0: " + maxBackwardMillis);
+            }
+            this.maxBackwardMillis = maxBackwardMillis;
+            return this;
+        }
+
+        /**
+         * 节点ID, 与进程号一起散列为工作机器ID
+         */
+        public Builder machineId(long machineId) {
+            this.machineId = machineId;
+            return this;
+        }
+
+        /**
+         * 直接指定工作机器ID, 不再散列
+         */
+        public Builder workerId(long workerId) {
+            this.workerId = workerId;
+            return this;
+        }
+
+        /**
+         * 通过分配器获得唯一的工作机器ID, 如{@link FileLockWorkerIdAssigner}
+         */
+        public Builder workerIdAssigner(WorkerIdAssigner workerIdAssigner) {
+            this.workerIdAssigner = workerIdAssigner;
+            return this;
+        }
+
+        /**
+         * 毫秒时钟, 默认为{@link System#currentTimeMillis()}, 测试时模拟时钟回退
+         */
+        Builder clock(LongSupplier clock) {
+            this.clock = Objects.requireNonNull(clock);
+            return this;
+        }
+
+        public Snowflake build() {
+            return new Snowflake(this);
+        }
+
+        /**
+         * 时间单位内序列的最大值
+         */
+        long maxSequence() {
+            return ~(-1L << sequenceBits);
+        }
+
+        private void validate() {
+            if (timestampBits <= 0 || workerIdBits < 0 || sequenceBits <= 0) {
+                throw new IllegalArgumentException("bits must be positive");
+            }
+            if (timestampBits + workerIdBits + sequenceBits > 63) {
+                throw new IllegalArgumentException(String.format("timestampBits(%d) + workerIdBits(%d) + sequenceBits(%d) must not exceed 63",
+                        timestampBits, workerIdBits, sequenceBits));
+            }
         }
     }
-}
\ No newline at end of file
+}
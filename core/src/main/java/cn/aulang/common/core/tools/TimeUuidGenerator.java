@@ -0,0 +1,179 @@
+package cn.aulang.common.core.tools;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 单调递增的UUID(版本7)生成器, 适合用作聚簇索引的主键
+ * <p>
+ * 结构(RFC 9562):
+ * +--------------------+---------+----------+---------+-----------+
+ * |    unix_ts_ms      |  ver(7) |  rand_a  | var(10) |  rand_b   |
+ * +--------------------+---------+----------+---------+-----------+
+ *        48bits           4bits     12bits     2bits     62bits
+ * <p>
+ * 每毫秒第一个ID的rand_a与rand_b为随机数, 同一毫秒内(或时钟回退时)在上一个ID的随机部分上加1,
+ * 保证同一生成器产生的ID严格递增. 随机部分溢出时借用下一毫秒.
+ * <p>
+ * 除标准的36位字符串外, 还提供26位Crockford Base32字符串(与ULID相同的编码, 保持排序)
+ * 和用于BINARY(16)列的16字节大端形式.
+ */
+public class TimeUuidGenerator {
+
+    private static final char[] BASE32_DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] BASE32_VALUES = new byte[128];
+
+    private static final long RAND_B_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    static {
+        Arrays.fill(BASE32_VALUES, (byte) -1);
+        for (int i = 0; i < BASE32_DIGITS.length; i++) {
+            BASE32_VALUES[BASE32_DIGITS[i]] = (byte) i;
+            BASE32_VALUES[Character.toLowerCase(BASE32_DIGITS[i])] = (byte) i;
+        }
+        // Crockford Base32 解码时容忍易混淆的字符
+        BASE32_VALUES['O'] = BASE32_VALUES['o'] = 0;
+        BASE32_VALUES['I'] = BASE32_VALUES['i'] = 1;
+        BASE32_VALUES['L'] = BASE32_VALUES['l'] = 1;
+    }
+
+    /**
+     * 上一个ID的毫秒时间与随机部分, 由this同步
+     */
+    private long lastMillis = -1;
+    private int randA;
+    private long randB;
+
+    /**
+     * 进程内共享的生成器, 首次调用时才创建
+     */
+    public static TimeUuidGenerator shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * 获得下一个UUID (该方法是线程安全的)
+     *
+     * @return 版本7的UUID
+     */
+    public UUID next() {
+        long msb;
+        long lsb;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                lastMillis = now;
+                randA = random.nextInt() & 0xFFF;
+                randB = random.nextLong() & RAND_B_MASK;
+            } else {
+                randB = (randB + 1) & RAND_B_MASK;
+                if (randB == 0) {
+                    randA = (randA + 1) & 0xFFF;
+                    if (randA == 0) {
+                        lastMillis++;
+                    }
+                }
+            }
+            msb = (lastMillis << 16) | 0x7000L | randA;
+            lsb = 0x8000000000000000L | randB;
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * 标准的36位字符串, 中间有-分割
+     */
+    public String nextString() {
+        return next().toString();
+    }
+
+    /**
+     * 26位Crockford Base32字符串, 字符串顺序与生成顺序一致
+     */
+    public String nextBase32() {
+        return toBase32(next());
+    }
+
+    /**
+     * 16字节大端形式, 用于BINARY(16)列
+     */
+    public byte[] nextBytes() {
+        return toBytes(next());
+    }
+
+    /**
+     * 编码为26位Crockford Base32字符串
+     */
+    public static String toBase32(UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        char[] chars = new char[26];
+        for (int i = 25; i >= 0; i--) {
+            chars[i] = BASE32_DIGITS[(int) lsb & 0x1F];
+            lsb = (lsb >>> 5) | (msb << 59);
+            msb >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 解码26位Crockford Base32字符串
+     *
+     * @throws IllegalArgumentException 格式错误时
+     */
+    public static UUID fromBase32(String value) {
+        if (value == null || value.length() != 26) {
+            throw new IllegalArgumentException("Invalid base32 uuid: " + value);
+        }
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 26; i++) {
+            char c = value.charAt(i);
+            int digit = c < 128 ? BASE32_VALUES[c] : -1;
+            if (digit < 0 || (i == 0 && digit > 7)) {
+                throw new IllegalArgumentException("Invalid base32 uuid: " + value);
+            }
+            msb = (msb << 5) | (lsb >>> 59);
+            lsb = (lsb << 5) | digit;
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * 编码为16字节大端形式
+     */
+    public static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) msb;
+            bytes[i + 8] = (byte) lsb;
+            msb >>>= 8;
+            lsb >>>= 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * 解码16字节大端形式
+     */
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != 16) {
+            throw new IllegalArgumentException("uuid bytes length must be 16");
+        }
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (bytes[i] & 0xFF);
+            lsb = (lsb << 8) | (bytes[i + 8] & 0xFF);
+        }
+        return new UUID(msb, lsb);
+    }
+
+    private static class SharedHolder {
+        static final TimeUuidGenerator INSTANCE = new TimeUuidGenerator();
+    }
+}
@@ -0,0 +1,32 @@
+package cn.aulang.common.core.tools;
+
+/**
+ * Snowflake工作机器ID分配器
+ * <p>
+ * 默认的MAC地址与进程号散列在多实例(如同一主机上的多个容器)时容易冲突, 且启动时需要枚举所有网卡.
+ * 实现此接口可以保证工作机器ID唯一, 通过{@link Snowflake.Builder#workerIdAssigner(WorkerIdAssigner)}使用.
+ *
+ * @see ExplicitWorkerIdAssigner
+ * @see FileLockWorkerIdAssigner
+ */
+@FunctionalInterface
+public interface WorkerIdAssigner {
+
+    /**
+     * 分配工作机器ID, 在Snowflake构造时调用一次
+     *
+     * @param maxWorkerId 工作机器ID的最大值
+     * @return 工作机器ID(0~maxWorkerId)
+     * @throws IllegalStateException 无法分配时
+     */
+    long assignWorkerId(long maxWorkerId);
+
+    /**
+     * 分配的工作机器ID是否仍然有效, 如租约丢失后返回false, Snowflake随即拒绝生成ID
+     *
+     * @return 默认总是有效
+     */
+    default boolean isValid() {
+        return true;
+    }
+}
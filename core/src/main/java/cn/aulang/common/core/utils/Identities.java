@@ -1,17 +1,23 @@
 package cn.aulang.common.core.utils;
 
 import cn.aulang.common.core.tools.Snowflake;
+import cn.aulang.common.core.tools.TimeUuidGenerator;
+import org.apache.commons.lang3.StringUtils;
 
-import java.security.SecureRandom;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 封装各种生成唯一性ID算法的工具类.
  */
 public class Identities {
 
-    private static final Snowflake idGenerator = new Snowflake();
-    private static final SecureRandom random = new SecureRandom();
+    /**
+     * 指定SecureRandom算法的系统属性, 如NativePRNGNonBlocking、SHA1PRNG, 默认为DRBG
+     */
+    public static final String SECURE_RANDOM_ALGORITHM_PROPERTY = "identities.secure-random.algorithm";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     /**
      * 封装JDK自带的UUID, 通过Random数字生成, 中间有-分割.
@@ -24,20 +30,123 @@ public class Identities {
      * 封装JDK自带的UUID, 通过Random数字生成, 中间无-分割.
      */
     public static String uuid2() {
-        return UUID.randomUUID().toString().replaceAll("-", "");
+        UUID uuid = UUID.randomUUID();
+        return toHex(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), false);
+    }
+
+    /**
+     * 通过ThreadLocalRandom生成UUID(版本4), 不阻塞不竞争, 但不能用于安全相关的场景, 中间有-分割.
+     */
+    public static String fastUuid() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return toHex(version(random.nextLong(), 4), variant(random.nextLong()), true);
+    }
+
+    /**
+     * 通过ThreadLocalRandom生成UUID(版本4), 不阻塞不竞争, 但不能用于安全相关的场景, 中间无-分割.
+     */
+    public static String fastUuid2() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return toHex(version(random.nextLong(), 4), variant(random.nextLong()), false);
+    }
+
+    /**
+     * 按时间排序的UUID(版本7), 取自{@link TimeUuidGenerator#shared()}, 进程内严格递增, 中间有-分割.
+     * 用作数据库主键时按时间顺序插入, 减少B+树页分裂.
+     */
+    public static String timeUuid() {
+        return TimeUuidGenerator.shared().nextString();
+    }
+
+    /**
+     * 按时间排序的UUID(版本7), 取自{@link TimeUuidGenerator#shared()}, 进程内严格递增, 中间无-分割.
+     */
+    public static String timeUuid2() {
+        UUID uuid = TimeUuidGenerator.shared().next();
+        return toHex(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), false);
     }
 
     /**
      * 使用SecureRandom随机生成Long.
      */
     public static long randomLong() {
-        return Math.abs(random.nextLong());
+        return Math.abs(RandomHolder.POOL.nextLong());
     }
 
     /**
-     * 使用雪花算法生成Long
+     * 使用SecureRandom批量随机生成非负Long, 填满数组.
+     */
+    public static void randomLongs(long[] values) {
+        byte[] bytes = randomBytes(values.length * 8);
+        for (int i = 0, j = 0; i < values.length; i++) {
+            long value = 0;
+            for (int k = 0; k < 8; k++) {
+                value = (value << 8) | (bytes[j++] & 0xFF);
+            }
+            values[i] = value & Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 使用SecureRandom随机生成字节数组, 可用于令牌等.
+     */
+    public static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        RandomHolder.POOL.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 使用雪花算法生成Long, 与LongIdGenId共用{@link Snowflake#shared()}
      */
     public static long snowflake() {
-        return idGenerator.nextId();
+        return Snowflake.shared().nextId();
+    }
+
+    private static long version(long mostSigBits, int version) {
+        return (mostSigBits & ~0xF000L) | ((long) version << 12);
+    }
+
+    private static long variant(long leastSigBits) {
+        return (leastSigBits & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    }
+
+    /**
+     * 直接编码为十六进制字符, 与{@link UUID#toString()}格式相同
+     */
+    private static String toHex(long mostSigBits, long leastSigBits, boolean dash) {
+        char[] chars = new char[dash ? 36 : 32];
+        int pos = hex(chars, 0, mostSigBits >>> 32, 8);
+        if (dash) {
+            chars[pos++] = '-';
+        }
+        pos = hex(chars, pos, mostSigBits >>> 16, 4);
+        if (dash) {
+            chars[pos++] = '-';
+        }
+        pos = hex(chars, pos, mostSigBits, 4);
+        if (dash) {
+            chars[pos++] = '-';
+        }
+        pos = hex(chars, pos, leastSigBits >>> 48, 4);
+        if (dash) {
+            chars[pos++] = '-';
+        }
+        hex(chars, pos, leastSigBits, 12);
+        return new String(chars);
+    }
+
+    private static int hex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+        return offset + digits;
+    }
+
+    private static class RandomHolder {
+        static final SecureRandomPool POOL = new SecureRandomPool(
+                StringUtils.defaultIfBlank(System.getProperty(SECURE_RANDOM_ALGORITHM_PROPERTY), null),
+                Runtime.getRuntime().availableProcessors());
     }
 }
@@ -0,0 +1,79 @@
+package cn.aulang.common.core.utils;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * 分段的SecureRandom池, 线程按ID散列到不同的实例上, 减少共用一个SecureRandom时的锁竞争
+ * <p>
+ * 使用分段而不是ThreadLocal, 实例数量不随线程(包括虚拟线程)数量增长.
+ * 算法可以指定, 默认为DRBG(不可用时为SHA1PRNG), 每个实例各自持有状态和锁.
+ * <p>
+ * 注意: 不使用平台默认算法, Linux上默认的NativePRNG所有实例共用JDK内一个全局锁, 分段无法减少竞争.
+ */
+public class SecureRandomPool {
+
+    private static final String[] DEFAULT_ALGORITHMS = {"DRBG", "SHA1PRNG"};
+
+    private final SecureRandom[] randoms;
+    private final int mask;
+
+    /**
+     * 使用默认的DRBG算法, 分段数为CPU核数
+     */
+    public SecureRandomPool() {
+        this(null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param algorithm SecureRandom算法, 为null时使用DRBG, 不可用时为SHA1PRNG
+     * @param stripes   分段数, 向上取整为2的幂
+     */
+    public SecureRandomPool(String algorithm, int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.randoms = new SecureRandom[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            randoms[i] = newSecureRandom(algorithm);
+        }
+    }
+
+    private static SecureRandom newSecureRandom(String algorithm) {
+        if (algorithm == null) {
+            for (String defaultAlgorithm : DEFAULT_ALGORITHMS) {
+                try {
+                    return SecureRandom.getInstance(defaultAlgorithm);
+                } catch (NoSuchAlgorithmException e) {
+                    // 尝试下一个算法
+                }
+            }
+            return new SecureRandom();
+        }
+        try {
+            return SecureRandom.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("SecureRandom algorithm is not available: " + algorithm, e);
+        }
+    }
+
+    /**
+     * 当前线程对应的SecureRandom
+     */
+    public SecureRandom current() {
+        long id = Thread.currentThread().threadId();
+        return randoms[(int) (id ^ (id >>> 32)) & mask];
+    }
+
+    public long nextLong() {
+        return current().nextLong();
+    }
+
+    public void nextBytes(byte[] bytes) {
+        current().nextBytes(bytes);
+    }
+}
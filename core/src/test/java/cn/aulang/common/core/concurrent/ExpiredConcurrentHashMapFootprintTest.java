@@ -0,0 +1,88 @@
+package cn.aulang.common.core.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Heap per entry of a map with 1M entries, keys and values excluded, against the old layout of a map
+ * plus a side map of boxed write times.
+ */
+class ExpiredConcurrentHashMapFootprintTest {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final long ONE_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final TimerWheel timer = new TimerWheel();
+    private final Integer[] keys = new Integer[ENTRIES];
+    private final Object value = new Object();
+
+    ExpiredConcurrentHashMapFootprintTest() {
+        for (int i = 0; i < ENTRIES; i++) {
+            keys[i] = i + 1000;
+        }
+    }
+
+    @AfterEach
+    void stop() {
+        timer.stop();
+    }
+
+    @Test
+    void compactStorageTakesAtLeast40PercentLessHeap() throws InterruptedException {
+        double legacy = bytesPerEntry(() -> {
+            Map<Integer, Object> map = new ConcurrentHashMap<>();
+            Map<Integer, Long> timeMap = new ConcurrentHashMap<>();
+            for (Integer key : keys) {
+                timeMap.put(key, System.currentTimeMillis());
+                map.put(key, value);
+            }
+            return new Object[]{map, timeMap};
+        });
+        double compact = bytesPerEntry(() -> fill(ExpiredConcurrentHashMap.builder()
+                .expireAfterWrite(ONE_HOUR)
+                .compactStorage()
+                .timer(timer)
+                .build()));
+        double nodes = bytesPerEntry(() -> fill(new ExpiredConcurrentHashMap<>(ONE_HOUR, null, timer)));
+
+        String report = String.format("legacy %.1f, compact %.1f, nodes %.1f bytes per entry", legacy, compact, nodes);
+        assertTrue(compact <= legacy * 0.6, report);
+        assertTrue(nodes <= legacy, report);
+    }
+
+    private Object fill(ExpiredConcurrentHashMap<Object, Object> map) {
+        for (Integer key : keys) {
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    private static double bytesPerEntry(Supplier<Object> layout) throws InterruptedException {
+        long before = usedHeap();
+        Object retained = layout.get();
+        // lets the timer move the scheduled nodes out of its pending queue
+        Thread.sleep(100);
+        long after = usedHeap();
+        double bytes = (double) (after - before) / ENTRIES;
+        if (retained instanceof ExpiredConcurrentHashMap<?, ?> map) {
+            map.quitMap();
+        }
+        return bytes;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,474 @@
+package cn.aulang.common.core.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiredConcurrentHashMapTest {
+
+    private final TimerWheel timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+
+    @AfterEach
+    void stop() {
+        timer.stop();
+    }
+
+    @Test
+    void keepsTheConcurrentHashMapApi() {
+        for (ExpiredConcurrentHashMap<String, Integer> map : List.of(nodeMap(60_000), compactMap(60_000))) {
+            ConcurrentHashMap<String, Integer> chm = map;
+            chm.put("a", 1);
+            chm.put("b", 2);
+            chm.put("c", 3);
+
+            assertEquals(3, chm.mappingCount());
+            assertTrue(chm.contains(2));
+            assertTrue(chm.containsValue(3));
+            assertEquals(Set.of("a", "b", "c"), new TreeSet<>(Collections.list(chm.keys())));
+            assertEquals(List.of(1, 2, 3), Collections.list(chm.elements()).stream().sorted().toList());
+            assertEquals("b", chm.search(1, (k, v) -> v == 2 ? k : null));
+            assertEquals(6, chm.reduceValues(1, Integer::sum));
+            assertEquals(6, chm.reduceValuesToInt(1, v -> v, 0, Integer::sum));
+            assertEquals(6L, chm.reduceEntriesToLong(1, e -> e.getValue(), 0L, Long::sum));
+            assertEquals(Map.of("a", 1, "b", 2, "c", 3), Map.copyOf(chm));
+            assertEquals(Map.of("a", 1, "b", 2, "c", 3), chm);
+            assertEquals(Map.of("a", 1, "b", 2, "c", 3).hashCode(), chm.hashCode());
+
+            List<Integer> seen = new CopyOnWriteArrayList<>();
+            chm.forEach(1, (k, v) -> seen.add(v));
+            assertEquals(List.of(1, 2, 3), seen.stream().sorted().toList());
+        }
+    }
+
+    @Test
+    void writePathsKeepTheEntryConsistent() {
+        for (ExpiredConcurrentHashMap<String, Integer> map : List.of(nodeMap(60_000), compactMap(60_000))) {
+            assertNull(map.putIfAbsent("a", 1));
+            assertEquals(1, map.putIfAbsent("a", 2));
+            assertEquals(1, map.replace("a", 3));
+            assertFalse(map.replace("a", 1, 4));
+            assertTrue(map.replace("a", 3, 4));
+            assertEquals(5, map.merge("a", 1, Integer::sum));
+            assertEquals(10, map.compute("a", (k, v) -> v * 2));
+            assertEquals(7, map.computeIfAbsent("b", k -> 7));
+            assertNull(map.computeIfPresent("b", (k, v) -> null));
+            assertFalse(map.remove("a", 1));
+            assertTrue(map.remove("a", 10));
+            assertTrue(map.isEmpty());
+
+            map.put("c", 1);
+            map.put("d", 2);
+            map.entrySet().iterator().next().setValue(9);
+            assertTrue(map.containsValue(9));
+            map.values().removeIf(v -> v == 9);
+            assertEquals(1, map.size());
+            map.clear();
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    void expiresAfterWrite() throws InterruptedException {
+        List<RemovalNotification<String, Integer>> removals = new CopyOnWriteArrayList<>();
+        ExpiredConcurrentHashMapListener<String, Integer> listener = new ExpiredConcurrentHashMapListener<>() {
+            @Override
+            public void onRemoval(String key, Integer value, RemovalCause cause) {
+                removals.add(new RemovalNotification<>(key, value, cause));
+            }
+        };
+
+        for (boolean compact : new boolean[]{false, true}) {
+            removals.clear();
+            ExpiredConcurrentHashMap.Builder<String, Integer> builder = ExpiredConcurrentHashMap.<String, Integer>builder()
+                    .expireAfterWrite(50)
+                    .listener(listener)
+                    .timer(timer);
+            if (compact) {
+                builder.compactStorage();
+            }
+            ExpiredConcurrentHashMap<String, Integer> map = builder.build();
+            map.put("a", 1);
+            map.put("b", 2);
+            map.remove("b");
+
+            awaitEmpty(map);
+            // the listener is called after the entry has left the map
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (removals.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(20);
+            assertEquals(List.of(new RemovalNotification<>("a", 1, RemovalCause.EXPIRED)), removals);
+        }
+    }
+
+    @Test
+    void readsExtendTheLifeUnderExpireAfterAccess() throws InterruptedException {
+        ExpiredConcurrentHashMap<String, Integer> map = ExpiredConcurrentHashMap.<String, Integer>builder()
+                .expireAfterAccess(100)
+                .timer(timer)
+                .build();
+        map.put("read", 1);
+        map.put("idle", 2);
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(30);
+            assertEquals(1, map.get("read"));
+        }
+        assertFalse(map.containsKey("idle"));
+        awaitEmpty(map);
+    }
+
+    @Test
+    void readDoesNotReviveAnExpiredEntry() throws InterruptedException {
+        // the expiry time passes a tick before the timeout of the entry runs
+        TimerWheel coarse = new TimerWheel(100, TimeUnit.MILLISECONDS);
+        List<RemovalNotification<String, Integer>> removals = new CopyOnWriteArrayList<>();
+        try {
+            ExpiredConcurrentHashMap<String, Integer> map = ExpiredConcurrentHashMap.<String, Integer>builder()
+                    .expireAfterAccess(100)
+                    .listener(new ExpiredConcurrentHashMapListener<>() {
+                        @Override
+                        public void onRemoval(String key, Integer value, RemovalCause cause) {
+                            removals.add(new RemovalNotification<>(key, value, cause));
+                        }
+                    })
+                    .timer(coarse)
+                    .build();
+            long expireAt = coarse.currentTimeMillis() + 100;
+            map.put("a", 1);
+            while (coarse.currentTimeMillis() < expireAt) {
+                Thread.sleep(1);
+            }
+
+            assertNull(map.get("a"));
+            assertFalse(map.containsKey("a"));
+            assertEquals(List.of(new RemovalNotification<>("a", 1, RemovalCause.EXPIRED)), removals);
+        } finally {
+            coarse.stop();
+        }
+    }
+
+    @Test
+    void readsHideExpiredEntriesBeforeTheTimerRuns() throws InterruptedException {
+        // the expiry time passes a tick before the timeouts of the entries run
+        TimerWheel coarse = new TimerWheel(100, TimeUnit.MILLISECONDS);
+        List<RemovalNotification<String, Integer>> removals = new CopyOnWriteArrayList<>();
+        try {
+            ExpiredConcurrentHashMap<String, Integer> map = ExpiredConcurrentHashMap.<String, Integer>builder()
+                    .expireAfterWrite(100)
+                    .checkExpiryOnRead()
+                    .listener(new ExpiredConcurrentHashMapListener<>() {
+                        @Override
+                        public void onRemoval(String key, Integer value, RemovalCause cause) {
+                            removals.add(new RemovalNotification<>(key, value, cause));
+                        }
+                    })
+                    .timer(coarse)
+                    .build();
+            long expireAt = coarse.currentTimeMillis() + 100;
+            map.put("get", 1);
+            map.put("containsKey", 2);
+            map.put("iteration", 3);
+            map.put("live", 4, Duration.ofMinutes(1));
+            while (coarse.currentTimeMillis() < expireAt) {
+                Thread.sleep(1);
+            }
+
+            assertNull(map.get("get"));
+            assertFalse(map.containsKey("containsKey"));
+            assertEquals(List.of("live"), map.entrySet().stream().map(Map.Entry::getKey).toList());
+            assertEquals(Set.of(
+                    new RemovalNotification<>("get", 1, RemovalCause.EXPIRED),
+                    new RemovalNotification<>("containsKey", 2, RemovalCause.EXPIRED),
+                    new RemovalNotification<>("iteration", 3, RemovalCause.EXPIRED)), Set.copyOf(removals));
+            assertEquals(3, removals.size());
+            assertEquals(Map.of("live", 4), map);
+        } finally {
+            coarse.stop();
+        }
+    }
+
+    @Test
+    void entryTimeToLiveOverridesTheExpiryOfTheMap() throws InterruptedException {
+        ExpiredConcurrentHashMap<String, Integer> map = nodeMap(60_000);
+        map.put("short", 1, Duration.ofMillis(50));
+        map.put("map", 2);
+        map.put("long", 3, Duration.ofMinutes(2));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (map.containsKey("short")) {
+            assertTrue(System.nanoTime() < deadline, "entry has not expired");
+            Thread.sleep(5);
+        }
+        assertEquals(Map.of("map", 2, "long", 3), map);
+
+        // a write without a time to live falls back to the expiry of the map
+        map.put("short", 4);
+        Thread.sleep(100);
+        assertEquals(4, map.get("short"));
+    }
+
+    @Test
+    void loadsOnceForConcurrentCallers() throws Exception {
+        ExpiredConcurrentHashMap<String, Integer> map = nodeMap(60_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, Integer> loader = k -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return 42;
+        };
+
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> map.get("a", loader)));
+            loading.await();
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> map.get("a", loader)));
+            }
+            // the other callers are waiting for the load, or find its value once it is done
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(42, map.get("a"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loaderExceptionReachesAllWaitersAndIsNotKept() throws Exception {
+        ExpiredConcurrentHashMap<String, Integer> map = nodeMap(60_000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, Integer> failing = k -> {
+            loading.countDown();
+            await(release);
+            throw new IllegalArgumentException("no value of " + k);
+        };
+
+        int callers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> map.get("a", failing)));
+            loading.await();
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> map.get("a", failing)));
+            }
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertFalse(map.containsKey("a"));
+        assertEquals(7, map.get("a", k -> 7));
+    }
+
+    @Test
+    void recursiveLoadOfTheSameKeyFails() {
+        ExpiredConcurrentHashMap<String, Integer> map = nodeMap(60_000);
+
+        assertThrows(IllegalStateException.class, () -> map.get("a", k -> map.get(k, k2 -> 1)));
+        assertThrows(IllegalStateException.class, () -> map.get("a", k -> map.get("b", k2 -> map.get(k, k3 -> 1))));
+        // the failed loads are not left in flight
+        assertEquals(2, map.get("a", k -> 2));
+        assertEquals(3, map.get("b", k -> 3));
+    }
+
+    @Test
+    void timerThreadDropsEventsOfAFullQueue() throws InterruptedException {
+        // the drain task is held back, so the queue stays full
+        List<Runnable> held = new CopyOnWriteArrayList<>();
+        List<String> added = new CopyOnWriteArrayList<>();
+        ExpiredConcurrentHashMap<String, Integer> map = ExpiredConcurrentHashMap.<String, Integer>builder()
+                .expireAfterWrite(20)
+                .listener(new ExpiredConcurrentHashMapListener<>() {
+                    @Override
+                    public void onAdd(String key, Integer value) {
+                        added.add(key);
+                    }
+                })
+                .executor(held::add)
+                .dispatchQueueCapacity(3)
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .timer(timer)
+                .build();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+
+        awaitEmpty(map);
+        assertEquals(3, map.droppedEvents());
+        held.forEach(Runnable::run);
+        assertEquals(List.of("a", "b", "c"), added);
+    }
+
+    @Test
+    void rewriteExtendsTheLifeOfACompactEntry() throws InterruptedException {
+        ExpiredConcurrentHashMap<String, Integer> map = compactMap(200);
+        Integer value = 1000;
+        map.put("a", value);
+        Thread.sleep(120);
+        map.put("a", value);
+        Thread.sleep(120);
+
+        assertEquals(value, map.get("a"));
+        awaitEmpty(map);
+    }
+
+    @Test
+    void sweepDropsWriteTimesOfKeysRemovedThroughViews() throws InterruptedException {
+        ExpiredConcurrentHashMap<String, Integer> map = compactMap(50);
+        for (int i = 0; i < 100; i++) {
+            map.put("k" + i, i);
+        }
+        map.keySet().removeIf(k -> k.endsWith("1"));
+        map.keySet().retainAll(Set.of("k2", "k3", "k4", "k5"));
+        map.values().removeIf(v -> v == 2);
+        Iterator<String> keys = map.keySet().iterator();
+        keys.next();
+        keys.remove();
+        assertEquals(2, map.size());
+
+        awaitEmpty(map);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!map.isIndexEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "write times have not been dropped");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void compactStorageRejectsUnsupportedSettings() {
+        assertThrows(IllegalStateException.class, () -> ExpiredConcurrentHashMap.builder()
+                .compactStorage().maximumSize(10).build());
+        assertThrows(IllegalStateException.class, () -> ExpiredConcurrentHashMap.builder()
+                .compactStorage().expireAfterAccess(10).build());
+        assertThrows(UnsupportedOperationException.class, () -> compactMap(10)
+                .put("a", 1, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void admitsFrequentKeysOverAScan() {
+        ExpiredConcurrentHashMap<String, Integer> map = ExpiredConcurrentHashMap.<String, Integer>builder()
+                .expireAfterWrite(60_000)
+                .maximumSize(1000)
+                .timer(timer)
+                .build();
+        for (int i = 0; i < 100; i++) {
+            map.put("hot" + i, i);
+        }
+        for (int read = 0; read < 10; read++) {
+            for (int i = 0; i < 100; i++) {
+                map.get("hot" + i);
+            }
+        }
+
+        // keys seen once are rejected at the window instead of flushing the frequently read ones
+        for (int i = 0; i < 5000; i++) {
+            map.put("scan" + i, i);
+            assertTrue(map.size() <= 1000);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, map.get("hot" + i));
+        }
+        assertEquals(1000, map.size());
+    }
+
+    @Test
+    void serializesEntriesAndSettings() throws IOException, ClassNotFoundException {
+        for (ExpiredConcurrentHashMap<String, Integer> map : List.of(nodeMap(60_000), compactMap(60_000))) {
+            map.put("a", 1);
+            map.put("b", 2);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(map);
+            }
+            Object copy;
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                copy = in.readObject();
+            }
+
+            ExpiredConcurrentHashMap<?, ?> restored = assertInstanceOf(ExpiredConcurrentHashMap.class, copy);
+            assertEquals(map, restored);
+            restored.quitMap();
+        }
+    }
+
+    private ExpiredConcurrentHashMap<String, Integer> nodeMap(long expiryInMillis) {
+        return new ExpiredConcurrentHashMap<>(expiryInMillis, null, timer);
+    }
+
+    private ExpiredConcurrentHashMap<String, Integer> compactMap(long expiryInMillis) {
+        return ExpiredConcurrentHashMap.<String, Integer>builder()
+                .expireAfterWrite(expiryInMillis)
+                .compactStorage()
+                .timer(timer)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitEmpty(Map<?, ?> map) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!map.isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "entries have not expired");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package cn.aulang.common.core.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(512);
+        assertEquals(0, sketch.frequency("key"));
+
+        for (int i = 1; i <= 20; i++) {
+            sketch.increment("key");
+            assertEquals(Math.min(i, 15), sketch.frequency("key"));
+        }
+    }
+
+    @Test
+    void halvesTheCountersAfterTheSample() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 12; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(12, sketch.frequency("hot"));
+
+        // 10 times the capacity of increments age every counter
+        for (int i = 0; i < 640; i++) {
+            sketch.increment(i);
+        }
+        assertTrue(sketch.frequency("hot") <= 6);
+    }
+}
@@ -0,0 +1,176 @@
+package cn.aulang.common.core.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private TimerWheel timer;
+
+    @AfterEach
+    void stop() {
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    @Test
+    void expiresAfterCascade() throws InterruptedException {
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+        CountDownLatch fired = new CountDownLatch(1);
+
+        // 150 ticks is beyond the 64 buckets of the lowest level, the timeout has to cascade down
+        long start = System.nanoTime();
+        TimerWheel.Timeout timeout = timer.schedule(t -> fired.countDown(), 150, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    void expiresBeyondTheSpanOfTheWheels() throws InterruptedException {
+        // 64^4 ticks of 1 nanosecond are about 17 milliseconds, the timeout is re-inserted until it is due
+        timer = new TimerWheel(1, TimeUnit.NANOSECONDS);
+        CountDownLatch fired = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        timer.schedule(t -> fired.countDown(), 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+    }
+
+    @Test
+    void cancelBeforeInsert() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS, r -> {
+            // the worker does not move pending timeouts into the wheels until it is released
+            Thread thread = new Thread(() -> {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                r.run();
+            });
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger runs = new AtomicInteger();
+        TimerWheel.Timeout timeout = timer.schedule(t -> runs.incrementAndGet(), 1, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        started.countDown();
+
+        TimerWheel.Timeout probe = timer.schedule(t -> {
+        }, 20, TimeUnit.MILLISECONDS);
+        awaitExpired(probe);
+        assertEquals(0, runs.get());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    void cancelBeforeSchedule() throws InterruptedException {
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+        CountingTimeout timeout = new CountingTimeout();
+
+        assertTrue(timeout.cancel());
+        timer.schedule(timeout, 1, TimeUnit.MILLISECONDS);
+
+        TimerWheel.Timeout probe = timer.schedule(t -> {
+        }, 20, TimeUnit.MILLISECONDS);
+        awaitExpired(probe);
+        assertEquals(0, timeout.runs.get());
+    }
+
+    @Test
+    void cancelAfterInsert() throws InterruptedException {
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+        AtomicInteger runs = new AtomicInteger();
+        TimerWheel.Timeout timeout = timer.schedule(t -> runs.incrementAndGet(), 200, TimeUnit.MILLISECONDS);
+
+        // give the worker a few ticks to move the timeout into its bucket
+        Thread.sleep(50);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+
+        TimerWheel.Timeout probe = timer.schedule(t -> {
+        }, 300, TimeUnit.MILLISECONDS);
+        awaitExpired(probe);
+        assertEquals(0, runs.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    void cancelAfterExpiry() throws InterruptedException {
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+        TimerWheel.Timeout timeout = timer.schedule(t -> {
+        }, 1, TimeUnit.MILLISECONDS);
+
+        awaitExpired(timeout);
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isCancelled());
+    }
+
+    @Test
+    void rescheduleFromRun() throws InterruptedException {
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+        CountDownLatch fired = new CountDownLatch(3);
+        timer.schedule(t -> {
+            fired.countDown();
+            if (fired.getCount() > 0) {
+                timer.schedule(t, 5, TimeUnit.MILLISECONDS);
+            }
+        }, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void scheduleTwice() {
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+        CountingTimeout timeout = new CountingTimeout();
+        timer.schedule(timeout, 1, TimeUnit.HOURS);
+
+        assertThrows(IllegalStateException.class, () -> timer.schedule(timeout, 1, TimeUnit.HOURS));
+    }
+
+    @Test
+    void scheduleOnStoppedTimer() {
+        timer = new TimerWheel(1, TimeUnit.MILLISECONDS);
+        timer.stop();
+
+        assertFalse(timer.isAlive());
+        assertThrows(IllegalStateException.class, () -> timer.schedule(t -> {
+        }, 1, TimeUnit.MILLISECONDS));
+    }
+
+    private static void awaitExpired(TimerWheel.Timeout timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!timeout.isExpired()) {
+            assertTrue(System.nanoTime() < deadline, "timeout has not expired");
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class CountingTimeout extends TimerWheel.Timeout {
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        protected void run() {
+            runs.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package cn.aulang.common.core.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedSnowflakeTest {
+
+    /**
+     * 4位序列, RingBuffer只有 16 << 1 = 32 个ID, 很快取空
+     */
+    private static CachedSnowflake smallSnowflake() {
+        return new CachedSnowflake(Snowflake.builder().sequenceBits(4).workerId(3), 1, 50);
+    }
+
+    @Test
+    void fillsOnFirstUse() {
+        CachedSnowflake snowflake = smallSnowflake();
+        assertEquals(0, snowflake.remaining());
+
+        snowflake.nextId();
+        assertEquals(31, snowflake.remaining());
+    }
+
+    @Test
+    void refillsWhenEmpty() {
+        CachedSnowflake snowflake = smallSnowflake();
+
+        // 远超RingBuffer大小, 需要多次由调用线程或后台线程补充
+        long last = -1;
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            long id = snowflake.nextId();
+            assertTrue(id > last, "ids must increase");
+            assertTrue(ids.add(id), "duplicate id " + id);
+            last = id;
+        }
+    }
+
+    @Test
+    void batchesRefillWhenEmpty() {
+        CachedSnowflake snowflake = smallSnowflake();
+
+        long[] ids = snowflake.nextIds(1000);
+        for (int i = 1; i < ids.length; i++) {
+            assertTrue(ids[i] > ids[i - 1], "ids must increase");
+        }
+    }
+
+    @Test
+    void uniqueUnderContention() throws Exception {
+        CachedSnowflake snowflake = smallSnowflake();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 5000; i++) {
+                        assertTrue(ids.add(snowflake.nextId()));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(20_000, ids.size());
+    }
+
+    @Test
+    void progressesWithMoreThreadsThanCpus() throws Exception {
+        CachedSnowflake snowflake = smallSnowflake();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        // 线程远多于CPU且RingBuffer持续被取空, 等待的线程不能饿死补充线程
+        int threads = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        ids.add(snowflake.nextId());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * 1000, ids.size());
+    }
+}
@@ -0,0 +1,87 @@
+package cn.aulang.common.core.tools;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonMapperTest {
+
+    private final JsonMapper mapper = new JsonMapper();
+
+    @Test
+    void bytesAndBuffers() {
+        Item item = new Item("a", 1);
+        byte[] bytes = mapper.toJsonBytes(item);
+
+        assertEquals(mapper.toJson(item), new String(bytes, StandardCharsets.UTF_8));
+        assertEquals(item, mapper.fromJson(bytes, Item.class));
+
+        ByteBuffer heap = ByteBuffer.allocate(bytes.length + 2).put((byte) ' ').put(bytes);
+        heap.flip().position(1);
+        assertEquals(item, mapper.fromJson(heap, Item.class));
+        assertEquals(1, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        assertEquals(item, mapper.fromJson(direct, Item.class));
+
+        assertNull(mapper.fromJson(new byte[0], Item.class));
+        assertNull(mapper.fromJson("{".getBytes(StandardCharsets.UTF_8), Item.class));
+    }
+
+    @Test
+    void streams() throws IOException {
+        Item item = new Item("b", 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mapper.toJson(out, item);
+
+        assertArrayEquals(mapper.toJsonBytes(item), out.toByteArray());
+        assertEquals(item, mapper.fromJson(new ByteArrayInputStream(out.toByteArray()), Item.class));
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        mapper.toJson(buffer, item);
+        assertEquals(item, mapper.fromJson(buffer.flip(), Item.class));
+    }
+
+    @Test
+    void readsLargeArraysElementByElement() throws IOException {
+        byte[] json = "[{\"name\":\"a\",\"count\":1},{\"name\":\"b\",\"count\":2}]".getBytes(StandardCharsets.UTF_8);
+
+        try (var values = mapper.readValues(new ByteArrayInputStream(json), Item.class)) {
+            assertEquals(List.of(new Item("a", 1), new Item("b", 2)), values.readAll());
+        }
+    }
+
+    @Test
+    void binaryFormats() throws IOException {
+        Item item = new Item("binary", 3);
+        int jsonLength = mapper.toJsonBytes(item).length;
+
+        for (JsonMapper binary : List.of(new JsonMapper(new SmileFactory(), null), new JsonMapper(new CBORFactory(), null))) {
+            byte[] bytes = binary.toBytes(item);
+            assertTrue(bytes.length < jsonLength);
+            assertEquals(item, binary.fromBytes(bytes, Item.class));
+            assertEquals(item, binary.fromBytes(ByteBuffer.wrap(bytes), Item.class));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            binary.toJson(out, List.of(item, item));
+            List<Item> items = binary.fromJson(new ByteArrayInputStream(out.toByteArray()),
+                    binary.createCollectionType(List.class, Item.class));
+            assertEquals(List.of(item, item), items);
+        }
+    }
+
+    record Item(String name, int count) {
+    }
+}
@@ -0,0 +1,42 @@
+package cn.aulang.common.core.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseResultTest {
+
+    @Test
+    void failureWithoutMessageIsNotSuccess() {
+        ParseResult<String> result = ParseResult.failure(new IOException());
+
+        assertFalse(result.isSuccess());
+        assertEquals(IOException.class.getName(), result.error());
+        assertEquals("other", result.orElse("other"));
+    }
+
+    @Test
+    void successMayHoldNull() {
+        ParseResult<String> result = ParseResult.success(null);
+
+        assertTrue(result.isSuccess());
+        assertNull(result.error());
+        assertNull(result.orElse("other"));
+    }
+
+    @Test
+    void failureReportsTheLocation() {
+        ParseResult<Object> result = new JsonMapper().tryFromJson("{\n  \"a\": }", Object.class);
+
+        assertFalse(result.isSuccess());
+        assertNotNull(result.error());
+        assertEquals(2, result.line());
+        assertTrue(result.column() > 0);
+    }
+}
@@ -0,0 +1,191 @@
+package cn.aulang.common.core.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void uniqueAndMonotonicUnderContention() throws Exception {
+        Snowflake snowflake = millisSnowflake();
+
+        List<long[]> results = generate(() -> {
+            long[] ids = new long[IDS_PER_THREAD];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = snowflake.nextId();
+            }
+            return ids;
+        });
+
+        assertUniqueAndMonotonic(results);
+    }
+
+    @Test
+    void batchesInterleaveWithSingleIds() throws Exception {
+        Snowflake snowflake = millisSnowflake();
+
+        List<long[]> results = generate(() -> {
+            long[] ids = new long[IDS_PER_THREAD];
+            int filled = 0;
+            long[] batch = new long[37];
+            while (filled < ids.length) {
+                if ((filled & 1) == 0) {
+                    ids[filled++] = snowflake.nextId();
+                } else {
+                    snowflake.nextIds(batch);
+                    int count = Math.min(batch.length, ids.length - filled);
+                    System.arraycopy(batch, 0, ids, filled, count);
+                    filled += count;
+                }
+            }
+            return ids;
+        });
+
+        assertUniqueAndMonotonic(results);
+    }
+
+    @Test
+    void idsCarryTheWorkerId() {
+        Snowflake snowflake = Snowflake.builder().workerId(5).build();
+        long id = snowflake.nextId();
+
+        assertEquals(5, (id >>> 13) & 0x3FF);
+        assertTrue(id > 0);
+    }
+
+    @Test
+    void refusesIdsOnceTheWorkerIdIsInvalid() {
+        AtomicBoolean valid = new AtomicBoolean(true);
+        WorkerIdAssigner assigner = new WorkerIdAssigner() {
+            @Override
+            public long assignWorkerId(long maxWorkerId) {
+                return 7;
+            }
+
+            @Override
+            public boolean isValid() {
+                return valid.get();
+            }
+        };
+        Snowflake snowflake = Snowflake.builder().workerIdAssigner(assigner).build();
+        CachedSnowflake cached = new CachedSnowflake(Snowflake.builder().workerIdAssigner(assigner), 0, 50);
+        snowflake.nextId();
+        cached.nextId();
+
+        valid.set(false);
+        assertThrows(IllegalStateException.class, snowflake::nextId);
+        assertThrows(IllegalStateException.class, () -> snowflake.nextIds(3));
+        assertThrows(IllegalStateException.class, cached::nextId);
+        assertThrows(IllegalStateException.class, () -> cached.nextIds(3));
+    }
+
+    @Test
+    void countsEachClockRollbackOnce() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        Snowflake snowflake = Snowflake.builder()
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .timestampBits(41)
+                .sequenceBits(12)
+                .workerId(1)
+                .maxBackwardMillis(10)
+                .clock(now::get)
+                .build();
+        snowflake.nextId();
+
+        // 一次回退期间生成多个ID
+        now.addAndGet(-5);
+        snowflake.nextId();
+        snowflake.nextIds(3);
+        now.addAndGet(-1);
+        snowflake.nextId();
+        assertEquals(1, snowflake.getClockBackwardsEventCount());
+        assertEquals(5, snowflake.getClockBackwardsIdCount());
+
+        // 时钟追上后再次回退, 超过阈值被拒绝
+        now.addAndGet(10);
+        snowflake.nextId();
+        now.addAndGet(-20);
+        assertThrows(RuntimeException.class, snowflake::nextId);
+        assertThrows(RuntimeException.class, snowflake::nextId);
+        assertEquals(2, snowflake.getClockBackwardsEventCount());
+        assertEquals(2, snowflake.getClockBackwardsRejectedCount());
+        assertEquals(5, snowflake.getClockBackwardsIdCount());
+    }
+
+    @Test
+    void installsTheSharedInstanceOnce() {
+        Snowflake installed = millisSnowflake();
+        Snowflake.install(installed);
+
+        assertSame(installed, Snowflake.shared());
+        assertThrows(IllegalStateException.class, () -> Snowflake.install(millisSnowflake()));
+    }
+
+    /**
+     * 毫秒级时间与12位序列, 每毫秒4096个ID, 测试不会长时间等待下一个时间单位
+     */
+    private static Snowflake millisSnowflake() {
+        return Snowflake.builder()
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .timestampBits(41)
+                .sequenceBits(12)
+                .workerId(1)
+                .build();
+    }
+
+    private static List<long[]> generate(Callable<long[]> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            List<long[]> results = new ArrayList<>();
+            for (Future<long[]> future : futures) {
+                results.add(future.get(1, TimeUnit.MINUTES));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertUniqueAndMonotonic(List<long[]> results) {
+        Set<Long> all = new HashSet<>();
+        for (long[] ids : results) {
+            for (int i = 0; i < ids.length; i++) {
+                assertTrue(all.add(ids[i]), "duplicate id " + ids[i]);
+                if (i > 0) {
+                    assertTrue(ids[i] > ids[i - 1], "ids of a thread must increase");
+                }
+            }
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, all.size());
+    }
+}
@@ -0,0 +1,60 @@
+package cn.aulang.common.core.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeUuidGeneratorTest {
+
+    @Test
+    void strictlyIncreasing() {
+        TimeUuidGenerator generator = new TimeUuidGenerator();
+        UUID last = generator.next();
+        String lastBase32 = TimeUuidGenerator.toBase32(last);
+        for (int i = 0; i < 100_000; i++) {
+            UUID uuid = generator.next();
+            assertTrue(Long.compareUnsigned(uuid.getMostSignificantBits(), last.getMostSignificantBits()) > 0
+                    || uuid.getMostSignificantBits() == last.getMostSignificantBits()
+                    && Long.compareUnsigned(uuid.getLeastSignificantBits(), last.getLeastSignificantBits()) > 0);
+
+            // Base32字符串与生成顺序一致
+            String base32 = TimeUuidGenerator.toBase32(uuid);
+            assertTrue(base32.compareTo(lastBase32) > 0);
+            last = uuid;
+            lastBase32 = base32;
+        }
+    }
+
+    @Test
+    void versionVariantAndTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID uuid = new TimeUuidGenerator().next();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        long millis = uuid.getMostSignificantBits() >>> 16;
+        assertTrue(millis >= before && millis <= System.currentTimeMillis());
+    }
+
+    @Test
+    void encodingsRoundTrip() {
+        UUID uuid = new TimeUuidGenerator().next();
+
+        String base32 = TimeUuidGenerator.toBase32(uuid);
+        assertEquals(26, base32.length());
+        assertEquals(uuid, TimeUuidGenerator.fromBase32(base32));
+        assertEquals(uuid, TimeUuidGenerator.fromBase32(base32.toLowerCase()));
+
+        byte[] bytes = TimeUuidGenerator.toBytes(uuid);
+        assertEquals(uuid, TimeUuidGenerator.fromBytes(bytes));
+        assertArrayEquals(bytes, TimeUuidGenerator.toBytes(TimeUuidGenerator.fromBytes(bytes)));
+
+        assertThrows(IllegalArgumentException.class, () -> TimeUuidGenerator.fromBase32("8" + base32.substring(1)));
+        assertThrows(IllegalArgumentException.class, () -> TimeUuidGenerator.fromBytes(new byte[15]));
+    }
+}
@@ -0,0 +1,40 @@
+package cn.aulang.common.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdentitiesTest {
+
+    @Test
+    void timeUuidsIncrease() {
+        String last = Identities.timeUuid();
+        for (int i = 0; i < 10_000; i++) {
+            String uuid = Identities.timeUuid();
+            assertTrue(uuid.compareTo(last) > 0);
+            last = uuid;
+        }
+        assertEquals(7, UUID.fromString(last).version());
+    }
+
+    @Test
+    void timeUuidWithoutDashes() {
+        String first = Identities.timeUuid();
+        String uuid = Identities.timeUuid2();
+
+        assertEquals(32, uuid.length());
+        assertTrue(uuid.compareTo(first.replace("-", "")) > 0);
+    }
+
+    @Test
+    void fastUuidsAreVersion4() {
+        UUID uuid = UUID.fromString(Identities.fastUuid());
+
+        assertEquals(4, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals(32, Identities.fastUuid2().length());
+    }
+}
@@ -0,0 +1,45 @@
+package cn.aulang.common.core.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SecureRandomPoolTest {
+
+    @Test
+    void defaultsToDrbg() {
+        SecureRandomPool pool = new SecureRandomPool(null, 2);
+
+        assertEquals("DRBG", pool.current().getAlgorithm());
+    }
+
+    @Test
+    void stripesByThread() throws InterruptedException {
+        SecureRandomPool pool = new SecureRandomPool("SHA1PRNG", 4);
+        SecureRandom current = pool.current();
+        assertSame(current, pool.current());
+        assertEquals("SHA1PRNG", current.getAlgorithm());
+
+        // 相邻的线程ID散列到不同的分段
+        AtomicReference<SecureRandom> other = new AtomicReference<>();
+        Thread thread = Thread.ofPlatform().unstarted(() -> other.set(pool.current()));
+        long id = thread.threadId();
+        thread.start();
+        thread.join();
+        if ((id & 3) != (Thread.currentThread().threadId() & 3)) {
+            assertNotSame(current, other.get());
+        }
+    }
+
+    @Test
+    void rejectsUnknownAlgorithms() {
+        assertThrows(IllegalArgumentException.class, () -> new SecureRandomPool("NoSuchPRNG", 1));
+        assertThrows(IllegalArgumentException.class, () -> new SecureRandomPool(null, 0));
+    }
+}
@@ -0,0 +1,55 @@
+package cn.aulang.common.config;
+
+import cn.aulang.common.core.tools.JsonMapper;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 使用Spring管理的ObjectMapper创建JsonMapper, 与HTTP消息转换共用同一个ObjectMapper,
+ * 配置与序列化器缓存只有一份
+ * <p>
+ * json-mapper.warm-up-classes配置的实体类(如IdEntity的子类)在启动时预先创建序列化器与反序列化器,
+ * 多个类以逗号分隔
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(ObjectMapper.class)
+@AutoConfigureAfter(JacksonAutoConfiguration.class)
+public class JsonMapperConfig {
+
+    @Bean
+    @ConditionalOnBean(ObjectMapper.class)
+    @ConditionalOnMissingBean(JsonMapper.class)
+    public JsonMapper jsonMapper(ObjectMapper objectMapper,
+                                 @Value("${json-mapper.warm-up-classes:}") Class<?>[] warmUpClasses) {
+        JsonMapper jsonMapper = JsonMapper.of(objectMapper);
+        // 未配置时为null
+        if (warmUpClasses != null) {
+            jsonMapper.warmUp(warmUpClasses);
+        }
+        return jsonMapper;
+    }
+
+    /**
+     * json-mapper.blackbird=true时向Spring的ObjectMapper注册Blackbird模块
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "com.fasterxml.jackson.module.blackbird.BlackbirdModule")
+    @ConditionalOnProperty(name = "json-mapper.blackbird", havingValue = "true")
+    static class BlackbirdConfig {
+
+        @Bean
+        public Module blackbirdModule() {
+            return new BlackbirdModule();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package cn.aulang.common.crud.id;
+
+import cn.aulang.common.core.concurrent.ThreadFactoryBuilder;
+import cn.aulang.common.core.tools.WorkerIdAssigner;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 通过数据库租约分配Snowflake工作机器ID, 保证共享同一张表的所有实例之间唯一
+ * <p>
+ * 启动时占用一个未被租用或租约已过期的ID, 之后每1/3租期续约一次, 关闭时释放. 实例异常退出时,
+ * 其ID在租约过期后才会被其他实例接管. 租期应远大于各主机之间的时钟偏差.
+ * <p>
+ * 续约失败且ID已被其他实例接管, 或直到租约到期都未能续约时, {@link #isValid()}返回false,
+ * Snowflake随即拒绝生成ID(fail closed), 需要重新创建分配器与Snowflake.
+ * <p>
+ * 需要先建表:
+ * <pre>
+ * CREATE TABLE snowflake_worker_lease (
+ *     worker_id    BIGINT       NOT NULL PRIMARY KEY,
+ *     instance     VARCHAR(128) NOT NULL,
+ *     lease_expire BIGINT       NOT NULL
+ * );
+ * </pre>
+ */
+@Slf4j
+public class DatabaseWorkerIdAssigner implements WorkerIdAssigner, Closeable {
+
+    private static final long DEFAULT_LEASE_MILLIS = 60_000L;
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final long leaseMillis;
+    private final String instance;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile long workerId = -1;
+
+    /**
+     * 本实例持有的租约到期时间, 只在占用或续约成功后推进
+     */
+    private volatile long leaseExpire;
+
+    /**
+     * 租约已被其他实例接管
+     */
+    private volatile boolean lost;
+
+    public DatabaseWorkerIdAssigner(SqlSessionFactory sqlSessionFactory) {
+        this(sqlSessionFactory, DEFAULT_LEASE_MILLIS);
+    }
+
+    /**
+     * @param sqlSessionFactory MyBatis会话工厂
+     * @param leaseMillis       租期(毫秒)
+     */
+    public DatabaseWorkerIdAssigner(SqlSessionFactory sqlSessionFactory, long leaseMillis) {
+        if (leaseMillis < 3_000L) {
+            throw new IllegalArgumentException("leaseMillis can't be less than 3000: " + leaseMillis);
+        }
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.leaseMillis = leaseMillis;
+        this.instance = ManagementFactory.getRuntimeMXBean().getName() + "#" + UUID.randomUUID();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("snowflake-lease-%d")
+                .setDaemon(true)
+                .build());
+
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        synchronized (configuration) {
+            if (!configuration.hasMapper(WorkerLeaseMapper.class)) {
+                configuration.addMapper(WorkerLeaseMapper.class);
+            }
+        }
+    }
+
+    @Override
+    public synchronized long assignWorkerId(long maxWorkerId) {
+        if (workerId >= 0) {
+            return workerId;
+        }
+
+        long now = System.currentTimeMillis();
+        Set<Long> leased = new HashSet<>(execute(mapper -> mapper.selectLeased(maxWorkerId, now)));
+        for (long id = 0; id <= maxWorkerId; id++) {
+            if (!leased.contains(id) && tryClaim(id, now)) {
+                workerId = id;
+                leaseExpire = now + leaseMillis;
+                long period = leaseMillis / 3;
+                scheduler.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+                log.info("Snowflake worker id {} leased by {}", id, instance);
+                return id;
+            }
+        }
+
+        throw new IllegalStateException(String.format("All %d worker ids are leased", maxWorkerId + 1));
+    }
+
+    /**
+     * 租约有效: 已分配、未被接管且未到期
+     */
+    @Override
+    public boolean isValid() {
+        return workerId >= 0 && !lost && System.currentTimeMillis() < leaseExpire;
+    }
+
+    private boolean tryClaim(long id, long now) {
+        long expire = now + leaseMillis;
+        if (execute(mapper -> mapper.claim(id, instance, expire, now)) == 1) {
+            return true;
+        }
+        try {
+            return execute(mapper -> mapper.insert(id, instance, expire)) == 1;
+        } catch (PersistenceException e) {
+            if (isDuplicateKey(e)) {
+                // 主键冲突, 已被其他实例占用
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 主键冲突: SQLIntegrityConstraintViolationException或SQLState为23xxx(完整性约束违反)
+     */
+    private static boolean isDuplicateKey(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException
+                    && sqlException.getSQLState() != null && sqlException.getSQLState().startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void renew() {
+        long id = workerId;
+        if (id < 0 || lost) {
+            return;
+        }
+
+        try {
+            long now = System.currentTimeMillis();
+            if (execute(mapper -> mapper.renew(id, instance, now + leaseMillis)) == 1 || tryClaim(id, now)) {
+                leaseExpire = now + leaseMillis;
+            } else {
+                lost = true;
+                log.error("Snowflake worker id {} lease lost, it has been taken by another instance", id);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to renew snowflake worker id {} lease, {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 停止续约并释放租约
+     */
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        long id = workerId;
+        if (id >= 0) {
+            workerId = -1;
+            try {
+                execute(mapper -> mapper.release(id, instance));
+            } catch (Exception e) {
+                log.warn("Failed to release snowflake worker id {} lease, {}", id, e.getMessage());
+            }
+        }
+    }
+
+    private <R> R execute(Function<WorkerLeaseMapper, R> action) {
+        try (SqlSession session = sqlSessionFactory.openSession(true)) {
+            return action.apply(session.getMapper(WorkerLeaseMapper.class));
+        }
+    }
+}
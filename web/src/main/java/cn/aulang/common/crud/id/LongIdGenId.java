@@ -5,10 +5,8 @@ import tk.mybatis.mapper.genid.GenId;
 
 public class LongIdGenId implements GenId<Long> {
 
-    private static final Snowflake snowflake = new Snowflake();
-
     @Override
     public Long genId(String table, String column) {
-        return snowflake.nextId();
+        return Snowflake.shared().nextId();
     }
 }
\ No newline at end of file
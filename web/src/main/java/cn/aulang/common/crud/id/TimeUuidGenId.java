@@ -0,0 +1,15 @@
+package cn.aulang.common.crud.id;
+
+import cn.aulang.common.core.tools.TimeUuidGenerator;
+import tk.mybatis.mapper.genid.GenId;
+
+/**
+ * 单调递增的26位Crockford Base32主键, 按插入顺序追加到索引末尾, 适用于CHAR(26)列
+ */
+public class TimeUuidGenId implements GenId<String> {
+
+    @Override
+    public String genId(String table, String column) {
+        return TimeUuidGenerator.shared().nextBase32();
+    }
+}
@@ -7,6 +7,6 @@ public class UUIDGenId implements GenId<String> {
 
     @Override
     public String genId(String table, String column) {
-        return Identities.uuid2();
+        return Identities.timeUuid2();
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package cn.aulang.common.crud.id;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * Snowflake工作机器ID租约表的访问接口, 由{@link DatabaseWorkerIdAssigner}注册到MyBatis
+ * <p>
+ * 时间均为毫秒时间戳, 避免依赖各数据库的时间函数
+ */
+public interface WorkerLeaseMapper {
+
+    @Select("SELECT worker_id FROM snowflake_worker_lease WHERE worker_id <= #{maxWorkerId} AND lease_expire >= #{now}")
+    List<Long> selectLeased(@Param("maxWorkerId") long maxWorkerId, @Param("now") long now);
+
+    @Insert("INSERT INTO snowflake_worker_lease (worker_id, instance, lease_expire) VALUES (#{workerId}, #{instance}, #{leaseExpire})")
+    int insert(@Param("workerId") long workerId, @Param("instance") String instance, @Param("leaseExpire") long leaseExpire);
+
+    /**
+     * 接管已过期或本实例持有的租约
+     */
+    @Update("UPDATE snowflake_worker_lease SET instance = #{instance}, lease_expire = #{leaseExpire} "
+            + "WHERE worker_id = #{workerId} AND (lease_expire < #{now} OR instance = #{instance})")
+    int claim(@Param("workerId") long workerId, @Param("instance") String instance,
+              @Param("leaseExpire") long leaseExpire, @Param("now") long now);
+
+    @Update("UPDATE snowflake_worker_lease SET lease_expire = #{leaseExpire} WHERE worker_id = #{workerId} AND instance = #{instance}")
+    int renew(@Param("workerId") long workerId, @Param("instance") String instance, @Param("leaseExpire") long leaseExpire);
+
+    @Delete("DELETE FROM snowflake_worker_lease WHERE worker_id = #{workerId} AND instance = #{instance}")
+    int release(@Param("workerId") long workerId, @Param("instance") String instance);
+}